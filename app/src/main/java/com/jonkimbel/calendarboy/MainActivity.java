@@ -9,48 +9,88 @@ import android.widget.Toast;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.jonkimbel.calendarboy.concurrent.IoExecutor;
 import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
 import com.jonkimbel.calendarboy.input.AccountSelectionController;
 import com.jonkimbel.calendarboy.input.EventDataController;
+import com.jonkimbel.calendarboy.input.SelectionPreferences;
 import com.jonkimbel.calendarboy.input.api.SelectionController;
 import com.jonkimbel.calendarboy.input.calendar.CalendarSelectionController;
-import com.jonkimbel.calendarboy.model.Event;
+import com.jonkimbel.calendarboy.logging.Logs;
+import com.jonkimbel.calendarboy.metrics.CalendarMetrics;
+import com.jonkimbel.calendarboy.model.CategoryIndex;
+import com.jonkimbel.calendarboy.model.EventStore;
+import com.jonkimbel.calendarboy.model.FreeTimeIndex;
+import com.jonkimbel.calendarboy.model.KeywordMatcher;
 import com.jonkimbel.calendarboy.view.CalendarView;
 
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
+    private static final String SNAPSHOT_FILE_NAME = "events.snapshot";
+    private static final long FOCUS_BLOCK_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final String[] CHIPS = {"emails", "code reviews", "tech debt"};
+    // Title keywords for each chip, parallel to CHIPS.
+    private static final String[][] CHIP_KEYWORDS = {
+            {"email", "emails", "e-mail", "inbox", "mail"},
+            {"code review", "code reviews", "review", "reviews", "pull request", "cr", "pr"},
+            {"tech debt", "refactor", "refactoring", "cleanup", "clean up", "migration"},
+    };
+
     private List<SelectionController> selectionControllers = new ArrayList<>();
     private EventDataController eventDataController;
+    @Nullable
+    private CalendarMetrics metrics;
     private CalendarView calendarView;
     private MaterialButton button;
-    private List<Event> events;
-    private int focusedEventIndex = -1;
-    private List<String> chips = Arrays.asList("emails", "code reviews", "tech debt");
+    private EventStore events;
+    // Built in the background from each complete set of events, so chip taps don't scan them.
+    // Partial results while a load streams in don't replace it.
+    @Nullable
+    private ChipIndex chipIndex;
+    private final KeywordMatcher chipMatcher = new KeywordMatcher(CHIP_KEYWORDS);
+    // Position within chipIndex of the event each chip last zoomed to, or -1.
+    private final int[] chipPositions = new int[CHIPS.length];
+    // True until fresh data replaces what came from the snapshot.
+    private boolean showingSnapshot = false;
+    // Bumped by every loadEvents(). Loads aren't ordered, so anything from an older one is dropped.
+    private int loadGeneration = 0;
+    // Repeated chip taps step through the day's free blocks from here.
+    private long nextFreeBlockSearchMillis = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        SelectionPreferences selectionPreferences = new SelectionPreferences(this);
+
         CalendarSelectionController calendarSelectionController =
-                new CalendarSelectionController(this);
+                new CalendarSelectionController(this, selectionPreferences);
         calendarSelectionController.setPermissionDeniedBehavior(() -> {
             String message = getResources().getString(R.string.calendar_permission_denied);
             Toast.makeText(this, message, Toast.LENGTH_LONG).show();
         });
+        calendarSelectionController.setSelectionInvalidatedBehavior(this::loadEvents);
         selectionControllers.add(calendarSelectionController);
 
         AccountSelectionController accountSelectionController =
-                new AccountSelectionController(this);
+                new AccountSelectionController(this, selectionPreferences);
         accountSelectionController.setPermissionDeniedBehavior(() -> {
             String message = getResources().getString(R.string.accounts_permission_denied);
             Toast.makeText(this, message, Toast.LENGTH_LONG).show();
@@ -58,47 +98,145 @@ public class MainActivity extends AppCompatActivity {
         selectionControllers.add(accountSelectionController);
 
         eventDataController = new EventDataController(
-                calendarSelectionController, getContentResolver(), accountSelectionController);
+                calendarSelectionController, getContentResolver(), accountSelectionController,
+                new File(getCacheDir(), SNAPSHOT_FILE_NAME));
 
         ChipGroup chipGroup = findViewById(R.id.chip_group);
-        for (String chipString : chips) {
+        for (int i = 0; i < CHIPS.length; i++) {
             LayoutInflater.from(this).inflate(R.layout.custom_category_chip, chipGroup);
             Chip chip = (Chip) chipGroup.getChildAt(chipGroup.getChildCount() - 1);
-            chip.setText(chipString);
+            chip.setText(CHIPS[i]);
+            chip.setTag(i);
             chip.setOnClickListener(this::onChipClick);
         }
 
         calendarView = findViewById(R.id.calendar_view);
+
+        if (Logs.VERBOSE) {
+            metrics = new CalendarMetrics();
+            calendarView.setMetricsListener(metrics);
+            eventDataController.setQueryMetricsListener(metrics);
+        }
     }
 
+    /**
+     * Zooms to the chip's next event, going back to the first after the last. If there are none
+     * today, zooms to the next free block instead so there's somewhere to fit that work in.
+     */
     private void onChipClick(View view) {
-        if (events == null) {
+        if (chipIndex == null) {
             return;
         }
 
-        if (focusedEventIndex < 0) {
-            focusedEventIndex = 0;
+        int chip = (int) view.getTag();
+        CategoryIndex chipEvents = chipIndex.chipEvents;
+        int eventCount = chipEvents.getEventCount(chip);
+        if (eventCount > 0) {
+            chipPositions[chip] = (chipPositions[chip] + 1) % eventCount;
+            int eventIndex = chipEvents.getEventIndex(chip, chipPositions[chip]);
+            calendarView.zoomTo(chipIndex.events.getStartTimeMillis(eventIndex),
+                    chipIndex.events.getEndTimeMillis(eventIndex));
         } else {
-            focusedEventIndex++;
-            if (focusedEventIndex >= events.size()) {
-                focusedEventIndex = 0;
-            }
+            zoomToNextFreeBlock(chipIndex.freeTime);
+        }
+    }
+
+    /** Zooms to the next free block long enough to focus on some work. */
+    private void zoomToNextFreeBlock(FreeTimeIndex freeTime) {
+        long nowMillis = System.currentTimeMillis();
+        long endOfTodayMillis = LocalDate.now().plusDays(1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long blockStartMillis = freeTime.findFreeBlock(
+                Math.max(nowMillis, nextFreeBlockSearchMillis), FOCUS_BLOCK_MILLIS);
+        if (blockStartMillis + FOCUS_BLOCK_MILLIS > endOfTodayMillis) {
+            // Past the last block of the day, so start over.
+            blockStartMillis = freeTime.findFreeBlock(nowMillis, FOCUS_BLOCK_MILLIS);
+        }
+        if (blockStartMillis + FOCUS_BLOCK_MILLIS > endOfTodayMillis) {
+            Toast.makeText(this, R.string.no_free_time_today, Toast.LENGTH_SHORT).show();
+            return;
         }
 
-        calendarView.zoomTo(
-                events.get(focusedEventIndex).getStartTimeMillis(),
-                events.get(focusedEventIndex).getEndTimeMillis());
+        nextFreeBlockSearchMillis = blockStartMillis + FOCUS_BLOCK_MILLIS;
+        calendarView.zoomTo(blockStartMillis, blockStartMillis + FOCUS_BLOCK_MILLIS);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        ListenableFuture<List<Event>> calendarDataFuture = eventDataController.getData();
+        eventDataController.startObserving(this::loadEvents);
+        if (events == null) {
+            loadSnapshot();
+        }
+        loadEvents();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        eventDataController.stopObserving();
+        if (Logs.VERBOSE && metrics != null) {
+            Logs.v(TAG, "Metrics:\n" + metrics);
+        }
+    }
+
+    /** Draws the events saved by the last run, unless real data beats it. */
+    private void loadSnapshot() {
+        ListenableFuture<ChipIndex> snapshotFuture = Futures.transform(
+                eventDataController.getSnapshot(),
+                snapshot -> snapshot != null ? new ChipIndex(snapshot, chipMatcher) : null,
+                IoExecutor.INSTANCE);
+        snapshotFuture.addListener(
+                () -> {
+                    try {
+                        ChipIndex snapshot = snapshotFuture.get();
+                        if (snapshot != null && events == null) {
+                            showingSnapshot = true;
+                            setEvents(snapshot.events);
+                            setChipIndex(snapshot);
+                        }
+                    } catch (ExecutionException | InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                },
+                UiThreadExecutor.INSTANCE);
+    }
+
+    /**
+     * Draws part of a load that's still streaming in, unless what's on screen (a snapshot, or the
+     * data from before a reload) has more to show.
+     */
+    private void onPartialEvents(EventStore partialEvents) {
+        if (events == null || partialEvents.size() > events.size()) {
+            showingSnapshot = false;
+            setEvents(partialEvents);
+        }
+    }
+
+    private void loadEvents() {
+        int generation = ++loadGeneration;
+        ListenableFuture<ChipIndex> calendarDataFuture = Futures.transform(
+                eventDataController.getData(partialEvents -> {
+                    if (generation == loadGeneration) {
+                        onPartialEvents(partialEvents);
+                    }
+                }),
+                freshEvents -> new ChipIndex(freshEvents, chipMatcher),
+                IoExecutor.INSTANCE);
         calendarDataFuture.addListener(
                 () -> {
+                    if (generation != loadGeneration) {
+                        return;  // A newer load has started; its data is fresher.
+                    }
                     try {
-                        events = calendarDataFuture.get();
-                        calendarView.setData(events);
+                        ChipIndex fresh = calendarDataFuture.get();
+                        // Usually the snapshot is still right; don't lay it out again.
+                        boolean unchanged = showingSnapshot && fresh.events.equals(events);
+                        showingSnapshot = false;
+                        if (!unchanged) {
+                            setEvents(fresh.events);
+                            setChipIndex(fresh);
+                        }
                     } catch (ExecutionException | InterruptedException e) {
                         e.printStackTrace();
                     }
@@ -106,6 +244,16 @@ public class MainActivity extends AppCompatActivity {
                 UiThreadExecutor.INSTANCE);
     }
 
+    private void setEvents(EventStore events) {
+        this.events = events;
+        calendarView.setData(events);
+    }
+
+    private void setChipIndex(ChipIndex chipIndex) {
+        this.chipIndex = chipIndex;
+        Arrays.fill(chipPositions, -1);
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
                                            @NonNull int[] grantResults) {
@@ -129,4 +277,18 @@ public class MainActivity extends AppCompatActivity {
             }
         }
     }
+
+    /** What chip taps search, for one complete set of events. */
+    private static final class ChipIndex {
+        final EventStore events;
+        final FreeTimeIndex freeTime;
+        final CategoryIndex chipEvents;
+
+        @WorkerThread
+        ChipIndex(EventStore events, KeywordMatcher chipMatcher) {
+            this.events = events;
+            freeTime = new FreeTimeIndex(events);
+            chipEvents = new CategoryIndex(events, chipMatcher, CHIPS.length);
+        }
+    }
 }
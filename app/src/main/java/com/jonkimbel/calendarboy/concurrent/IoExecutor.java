@@ -0,0 +1,43 @@
+package com.jonkimbel.calendarboy.concurrent;
+
+import android.os.Process;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool for blocking work (ContentProvider queries, disk) that must stay off the UI thread.
+ */
+public class IoExecutor {
+    public final static ListeningExecutorService INSTANCE = create();
+
+    // Provider queries mostly wait on binder, so a few can overlap (e.g. one per calendar).
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private IoExecutor() {}
+
+    private static ListeningExecutorService create() {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("calendarboy-io-%d")
+                .setDaemon(true)
+                .setThreadFactory(runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }))
+                .build();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(executor);
+    }
+}
@@ -0,0 +1,31 @@
+package com.jonkimbel.calendarboy.concurrent;
+
+import android.os.Process;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Single background thread for view layout work. Serial on purpose: a newer layout always
+ * supersedes an older one, so there's nothing to gain from running them in parallel.
+ */
+public class LayoutExecutor {
+    public final static Executor INSTANCE = create();
+
+    private LayoutExecutor() {}
+
+    private static Executor create() {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("calendarboy-layout-%d")
+                .setDaemon(true)
+                .setThreadFactory(runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                    runnable.run();
+                }))
+                .build();
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+}
@@ -23,19 +23,17 @@ public class AccountSelectionController implements SelectionController {
     private static final String TAG = "AccountPermissionsCtrl";
 
     private final Activity activity;
+    private final SelectionPreferences preferences;
     private final String androidMAccountSelectionDialogString;
 
     @GuardedBy("this")
     private Callback successCallback;
     @GuardedBy("this")
     private Runnable failureRunnable;
-    @GuardedBy("this")
-    private String accountName;
-    @GuardedBy("this")
-    private String accountType;
 
-    public AccountSelectionController(Activity activity) {
+    public AccountSelectionController(Activity activity, SelectionPreferences preferences) {
         this.activity = activity;
+        this.preferences = preferences;
         this.androidMAccountSelectionDialogString =
                 activity.getResources().getString(R.string.android_m_account_selection_dialog);
     }
@@ -64,8 +62,9 @@ public class AccountSelectionController implements SelectionController {
         }
 
         if (resultCode == Activity.RESULT_OK) {
-            accountName = data.getStringExtra(KEY_ACCOUNT_NAME);
-            accountType = data.getStringExtra(KEY_ACCOUNT_TYPE);
+            String accountName = data.getStringExtra(KEY_ACCOUNT_NAME);
+            String accountType = data.getStringExtra(KEY_ACCOUNT_TYPE);
+            preferences.setAccount(accountName, accountType);
             if (successCallback != null) {
                 Callback callback = successCallback;
                 UiThreadExecutor.INSTANCE.execute(() -> callback.onAccountSelected(
@@ -80,7 +79,15 @@ public class AccountSelectionController implements SelectionController {
         this.failureRunnable = runnable;
     }
 
+    /**
+     * Runs {@code callback} with the account picked earlier, possibly by a previous process, or
+     * asks the user to pick one. A remembered account is checked by
+     * {@link com.jonkimbel.calendarboy.input.calendar.CalendarSelectionController}, which forgets
+     * it if it has gone away.
+     */
     public synchronized void getSelectionThenRun(Callback callback) {
+        String accountName = preferences.getAccountName();
+        String accountType = preferences.getAccountType();
         if (accountName == null || accountType == null) {
             askForSelectionThenRun(callback);
         } else if (callback != null) {
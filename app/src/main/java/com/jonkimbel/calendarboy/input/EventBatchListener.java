@@ -0,0 +1,12 @@
+package com.jonkimbel.calendarboy.input;
+
+import com.jonkimbel.calendarboy.model.EventStore;
+
+/** Receives a load's events a batch at a time, as they stream in. */
+interface EventBatchListener {
+    /**
+     * @param newEvents events that arrived since the previous batch, sorted among themselves but
+     *                  not against other batches. May be called from several threads at once.
+     */
+    void onEvents(EventStore newEvents);
+}
@@ -3,28 +3,47 @@ package com.jonkimbel.calendarboy.input;
 import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.ContentUris;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.CalendarContract.Events;
 import android.provider.CalendarContract.Instances;
-import android.util.Log;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import com.jonkimbel.calendarboy.concurrent.IoExecutor;
+import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
 import com.jonkimbel.calendarboy.input.calendar.CalendarSelectionController;
-import com.jonkimbel.calendarboy.model.Event;
+import com.jonkimbel.calendarboy.logging.Logs;
+import com.jonkimbel.calendarboy.model.EventStore;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.os.TraceCompat;
 
 public class EventDataController {
+    private static final String TAG = "EventDataController";
+
     public static final String[] INSTANCE_PROJECTION = new String[]{
             Instances.BEGIN,         // 0
             Instances.END,           // 1
@@ -35,96 +54,407 @@ public class EventDataController {
     private static final int INSTANCE_PROJECTION_END = 1;
     private static final int INSTANCE_PROJECTION_TITLE = 2;
 
+    // The order EventStore keeps, so rows go straight in without a sort.
+    private static final String INSTANCE_SORT_ORDER =
+            Instances.BEGIN + " ASC, " + Instances.END + " ASC";
+
+    /** Default memory budget for cached days; a busy day is a few kilobytes. */
+    public static final long DEFAULT_CACHE_BYTES = 1 << 20;
+    // Provider edits tend to arrive as a burst of notifications (e.g. during a sync).
+    private static final long CHANGE_DEBOUNCE_MILLIS = 250;
+    // A long range is handed out in pieces as it streams in, at most one per frame.
+    private static final long STREAMING_BATCH_MILLIS = 16;
+
     private final CalendarSelectionController calendarSelectionController;
     private final AccountSelectionController accountSelectionController;
     private final ContentResolver contentResolver;
+    private final ListeningExecutorService ioExecutor;
+    private final long maxCacheBytes;
+    private final EventSnapshotFile snapshotFile;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver providerObserver = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mainHandler.removeCallbacks(dispatchDataChanged);
+            mainHandler.postDelayed(dispatchDataChanged, CHANGE_DEBOUNCE_MILLIS);
+        }
+    };
+    private final Runnable dispatchDataChanged = this::onProviderChanged;
+    @Nullable
+    private Runnable onDataChangedListener = null;
+    @Nullable
+    private volatile QueryMetricsListener queryMetricsListener = null;
 
-    // Monotonically non-null.
-    private List<Event> eventData = null;
+    // Replaced if different calendars get selected.
+    @GuardedBy("this")
+    private long[] loaderCalendarIds;
+    @GuardedBy("this")
+    private EventRangeLoader loader = null;
+    // What the snapshot file holds, if known; saves rewriting identical data.
+    @GuardedBy("this")
+    private EventStore snapshotData = null;
+    @GuardedBy("this")
+    private long snapshotStartMillis;
+    @GuardedBy("this")
+    private long snapshotEndMillis;
+
+    public EventDataController(
+            CalendarSelectionController calendarSelectionController,
+            ContentResolver contentResolver,
+            AccountSelectionController accountSelectionController,
+            File snapshotFile) {
+        this(calendarSelectionController, contentResolver, accountSelectionController,
+                snapshotFile, IoExecutor.INSTANCE, DEFAULT_CACHE_BYTES);
+    }
 
     public EventDataController(
             CalendarSelectionController calendarSelectionController,
             ContentResolver contentResolver,
-            AccountSelectionController accountSelectionController) {
+            AccountSelectionController accountSelectionController,
+            File snapshotFile,
+            ListeningExecutorService ioExecutor,
+            long maxCacheBytes) {
+        this.snapshotFile = new EventSnapshotFile(snapshotFile);
         this.calendarSelectionController = calendarSelectionController;
         this.accountSelectionController = accountSelectionController;
         this.contentResolver = contentResolver;
+        this.ioExecutor = ioExecutor;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Watches the calendar provider for edits. On a change the cached days are marked stale and
+     * {@code onDataChanged} runs on the UI thread, at which point {@link #getData} re-queries the
+     * days it's asked for.
+     */
+    @MainThread
+    public void startObserving(Runnable onDataChanged) {
+        stopObserving();
+        // Nothing was watching for edits until now (e.g. while the app was in the background), so
+        // any cached day may be out of date.
+        synchronized (this) {
+            if (loader != null) {
+                loader.invalidate();
+            }
+        }
+        onDataChangedListener = onDataChanged;
+        contentResolver.registerContentObserver(Instances.CONTENT_URI, true, providerObserver);
+        contentResolver.registerContentObserver(Events.CONTENT_URI, true, providerObserver);
+    }
+
+    @MainThread
+    public void stopObserving() {
+        contentResolver.unregisterContentObserver(providerObserver);
+        mainHandler.removeCallbacks(dispatchDataChanged);
+        onDataChangedListener = null;
     }
 
-    public ListenableFuture<List<Event>> getData() {
-        SettableFuture<List<Event>> dataAvailableFuture = SettableFuture.create();
+    /** Reports provider query timings, on the I/O thread that ran the query. */
+    public void setQueryMetricsListener(@Nullable QueryMetricsListener queryMetricsListener) {
+        this.queryMetricsListener = queryMetricsListener;
+    }
+
+    @MainThread
+    private void onProviderChanged() {
+        // The provider only notifies its root URI, so there's no telling which days changed.
+        synchronized (this) {
+            if (loader != null) {
+                loader.invalidate();
+            }
+        }
+        if (onDataChangedListener != null) {
+            onDataChangedListener.run();
+        }
+    }
+
+    /** Returns the events for today. See {@link #getData(long, long, PartialResultListener)}. */
+    public ListenableFuture<EventStore> getData(
+            @Nullable PartialResultListener partialResultListener) {
+        return getData(getTodayStartMillis(), getTomorrowStartMillis(), partialResultListener);
+    }
+
+    /** Returns the saved snapshot of today's events. See {@link #getSnapshot(long, long)}. */
+    public ListenableFuture<EventStore> getSnapshot() {
+        return getSnapshot(getTodayStartMillis(), getTomorrowStartMillis());
+    }
+
+    /**
+     * Returns the events last loaded for exactly [startMillis, endMillis), as saved on disk, or
+     * null if there are none. This skips account and calendar selection and the provider, so
+     * it's only good for drawing something while {@link #getData} catches up; it may be out of
+     * date or for a calendar that's no longer selected.
+     */
+    public ListenableFuture<EventStore> getSnapshot(long startMillis, long endMillis) {
+        return ioExecutor.submit(() -> {
+            EventStore snapshot = snapshotFile.read(startMillis, endMillis);
+            synchronized (EventDataController.this) {
+                if (snapshot != null && snapshotData == null) {
+                    setSnapshotData(startMillis, endMillis, snapshot);
+                }
+            }
+            return snapshot;
+        });
+    }
+
+    /**
+     * Returns the events overlapping [startMillis, endMillis), sorted by start time. Days are
+     * loaded on the I/O executor and kept in memory along with their neighbours, so nearby ranges
+     * are usually already loaded. Listeners attached to the returned future must pick their own
+     * executor (e.g. {@link com.jonkimbel.calendarboy.concurrent.UiThreadExecutor}) to touch
+     * views.
+     *
+     * @param partialResultListener if not null, given the events loaded so far, on the UI
+     *                              thread, at most once per frame while a query is still
+     *                              streaming in. Never called once the returned future is done.
+     */
+    public ListenableFuture<EventStore> getData(
+            long startMillis, long endMillis,
+            @Nullable PartialResultListener partialResultListener) {
+        SettableFuture<EventStore> dataAvailableFuture = SettableFuture.create();
+        EventBatchListener batchListener = partialResultListener == null
+                ? null
+                : new PartialResultAccumulator(
+                        dataAvailableFuture, partialResultListener, mainHandler, ioExecutor);
         accountSelectionController.getSelectionThenRun((accountName, accountType) -> {
-            getDataInternal(dataAvailableFuture, accountName, accountType);
+            calendarSelectionController.getSelectionThenRun(
+                    calendarIds -> dataAvailableFuture.setFuture(getLoader(calendarIds)
+                            .load(startMillis, endMillis, batchListener)),
+                    new CalendarSelectionController.AccountIdentifier(accountName, accountType));
         });
+        dataAvailableFuture.addListener(() -> {
+            if (isSuccessful(dataAvailableFuture)) {
+                saveSnapshot(startMillis, endMillis, Futures.getUnchecked(dataAvailableFuture));
+            }
+        }, ioExecutor);
         return dataAvailableFuture;
     }
 
-    private void getDataInternal(SettableFuture<List<Event>> future, String accountName,
-                                 String accountType) {
-        if (eventData != null) {
-            future.set(eventData);
-        } else {
-            calendarSelectionController.getSelectionThenRun(calendarId -> {
-                updateData(accountName, accountType, calendarId);
-                future.set(eventData);
-            }, new CalendarSelectionController.AccountIdentifier(accountName, accountType));
+    @WorkerThread
+    private void saveSnapshot(long startMillis, long endMillis, EventStore data) {
+        synchronized (this) {
+            if (startMillis == snapshotStartMillis && endMillis == snapshotEndMillis
+                    && data.equals(snapshotData)) {
+                return;
+            }
+            setSnapshotData(startMillis, endMillis, data);
         }
+        snapshotFile.write(startMillis, endMillis, data);
     }
 
-    @SuppressLint("MissingPermission") // We've already checked when this method is called.
-    private synchronized void updateData(String accountName, String accountType, Long calendarId) {
-        if (eventData != null) {
-            return;
+    @GuardedBy("this")
+    private void setSnapshotData(long startMillis, long endMillis, EventStore data) {
+        snapshotStartMillis = startMillis;
+        snapshotEndMillis = endMillis;
+        snapshotData = data;
+    }
+
+    private synchronized EventRangeLoader getLoader(long[] calendarIds) {
+        if (loader == null || !Arrays.equals(loaderCalendarIds, calendarIds)) {
+            loaderCalendarIds = calendarIds;
+            loader = new EventRangeLoader(ZoneId.systemDefault(),
+                    (startMillis, endMillis, progress) ->
+                            queryCalendars(calendarIds, startMillis, endMillis, progress),
+                    maxCacheBytes);
         }
+        return loader;
+    }
 
-        eventData = getInstances(accountName, accountType, calendarId);
+    /**
+     * Queries each calendar on its own, in parallel on the I/O executor, and merges the sorted
+     * results once they're all in. Batches streamed from each calendar are passed straight on.
+     */
+    private ListenableFuture<EventStore> queryCalendars(long[] calendarIds, long startMillis,
+                                                        long endMillis,
+                                                        EventBatchListener progress) {
+        List<ListenableFuture<EventStore>> calendarFutures = new ArrayList<>(calendarIds.length);
+        for (long calendarId : calendarIds) {
+            calendarFutures.add(ioExecutor.submit(
+                    () -> getInstances(calendarId, startMillis, endMillis, progress)));
+        }
+        return Futures.transform(Futures.allAsList(calendarFutures), EventStore::merge,
+                MoreExecutors.directExecutor());
     }
 
-    private List<Event> getInstances(String accountName, String accountType, Long calendarId) {
+    private static long getTodayStartMillis() {
         // TODO: ask the user which day they want to look at.
-        // TODO: use backwards-compatible time representations.
-        ZonedDateTime now = ZonedDateTime.ofInstant(Instant.now(), ZoneId.systemDefault());
-        ZonedDateTime todayStart = now.toLocalDate().atStartOfDay(ZoneId.systemDefault());
-        ZonedDateTime todayEnd = todayStart.plusDays(1).minusNanos(1000);
+        return LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long getTomorrowStartMillis() {
+        return LocalDate.now().plusDays(1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static boolean isSuccessful(ListenableFuture<?> future) {
+        try {
+            Futures.getDone(future);
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
 
+    @WorkerThread
+    private EventStore getInstances(long calendarId, long startMillis, long endMillis,
+                                    EventBatchListener progress) {
+        TraceCompat.beginSection("EventDataController#query");
+        long startNanos = System.nanoTime();
+        try {
+            EventStore events = queryInstances(calendarId, startMillis, endMillis, progress);
+            QueryMetricsListener metricsListener = queryMetricsListener;
+            if (metricsListener != null) {
+                metricsListener.onQuery(System.nanoTime() - startNanos, events.size());
+            }
+            return events;
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    @SuppressLint("MissingPermission") // We've already checked when this method is called.
+    @WorkerThread
+    private EventStore queryInstances(long calendarId, long startMillis, long endMillis,
+                                      EventBatchListener progress) {
         String selection = Instances.CALENDAR_ID + " = ?";
         String[] selectionArgs = new String[]{Long.toString(calendarId)};
 
         Uri.Builder uriBuilder = Instances.CONTENT_URI.buildUpon();
-        ContentUris.appendId(uriBuilder, todayStart.toEpochSecond() * 1000);
-        ContentUris.appendId(uriBuilder, todayEnd.toEpochSecond() * 1000);
+        // The provider's range is inclusive, so stop just short of endMillis.
+        ContentUris.appendId(uriBuilder, startMillis);
+        ContentUris.appendId(uriBuilder, endMillis - 1);
 
-        Log.i("EventDataController", Long.toString(calendarId));
-        Log.i("EventDataController", todayStart.format(DateTimeFormatter.ISO_DATE_TIME));
-        Log.i("EventDataController", todayEnd.format(DateTimeFormatter.ISO_DATE_TIME));
+        if (Logs.VERBOSE) {
+            Logs.v(TAG, "Querying calendar " + calendarId + " from "
+                    + Instant.ofEpochMilli(startMillis) + " to " + Instant.ofEpochMilli(endMillis));
+        }
 
         Cursor cursor = contentResolver.query(
                 uriBuilder.build(),
                 INSTANCE_PROJECTION,
                 selection,
                 selectionArgs,
-                null);
-
-        List<Event> data = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            String title = cursor.getString(INSTANCE_PROJECTION_TITLE);
-            long startTimeMillis = cursor.getLong(INSTANCE_PROJECTION_BEGIN);
-            long endTimeMillis = cursor.getLong(INSTANCE_PROJECTION_END);
-
-            Calendar startTime = Calendar.getInstance();
-            Calendar endTime = Calendar.getInstance();
-            startTime.setTimeInMillis(startTimeMillis);
-            endTime.setTimeInMillis(endTimeMillis);
-
-            DateFormat formatter = SimpleDateFormat.getDateTimeInstance();
-            Log.i("EventDataController",
-                    String.format("%s\t%s through %s",
-                            title,
-                            formatter.format(startTime.getTime()),
-                            formatter.format(endTime.getTime())));
-            data.add(new Event(startTimeMillis, endTimeMillis, title));
-        }
-        Collections.sort(data, Event::compare);
-        return data;
+                INSTANCE_SORT_ORDER);
+
+        if (cursor == null) {
+            return EventStore.EMPTY;
+        }
+        // Rows only go into the current batch; the result is put together from the batches.
+        int rowCount = cursor.getCount();
+        EventStore.Builder batch = new EventStore.Builder(rowCount);
+        List<EventStore> batches = new ArrayList<>();
+        long lastBatchTimeMillis = SystemClock.uptimeMillis();
+        try {
+            while (cursor.moveToNext()) {
+                String title = cursor.getString(INSTANCE_PROJECTION_TITLE);
+                long startTimeMillis = cursor.getLong(INSTANCE_PROJECTION_BEGIN);
+                long endTimeMillis = cursor.getLong(INSTANCE_PROJECTION_END);
+                if (Logs.VERBOSE) {
+                    Logs.v(TAG, title + "\t" + Instant.ofEpochMilli(startTimeMillis)
+                            + " through " + Instant.ofEpochMilli(endTimeMillis));
+                }
+                batch.add(startTimeMillis, endTimeMillis, title);
+
+                long now = SystemClock.uptimeMillis();
+                if (now - lastBatchTimeMillis >= STREAMING_BATCH_MILLIS) {
+                    EventStore newEvents = batch.build();
+                    batches.add(newEvents);
+                    progress.onEvents(newEvents);
+                    batch = new EventStore.Builder(Math.max(0, rowCount - cursor.getPosition()));
+                    lastBatchTimeMillis = now;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (batch.size() > 0) {
+            EventStore newEvents = batch.build();
+            batches.add(newEvents);
+            // So other calendars and days still loading can be drawn with these.
+            progress.onEvents(newEvents);
+        }
+        if (batches.size() <= 1) {
+            // The common case: the whole query fit in one batch.
+            return batches.isEmpty() ? EventStore.EMPTY : batches.get(0);
+        }
+        EventStore.Builder data = new EventStore.Builder(rowCount);
+        for (EventStore newEvents : batches) {
+            data.addAll(newEvents);
+        }
+        // Only sorts if the provider ignored the sort order.
+        return data.build();
+    }
+
+    /**
+     * Collects one load's batches into a single builder and hands the listener everything so
+     * far, on the UI thread, at most once per {@link #STREAMING_BATCH_MILLIS}. A batch that
+     * arrives sooner is published at the end of that interval, so nothing is held back until the
+     * load completes. Each row is only added once; the only per-publish cost is copying out the
+     * store.
+     */
+    private static final class PartialResultAccumulator implements EventBatchListener {
+        private final Future<?> loadFuture;
+        private final PartialResultListener listener;
+        private final Handler timerHandler;
+        private final Executor buildExecutor;
+        private final Runnable publishLater;
+        @GuardedBy("this")
+        private final EventStore.Builder received = new EventStore.Builder(0);
+        @GuardedBy("this")
+        private long lastPublishMillis = Long.MIN_VALUE / 2;
+        @GuardedBy("this")
+        private boolean publishScheduled = false;
+
+        PartialResultAccumulator(Future<?> loadFuture, PartialResultListener listener,
+                                 Handler timerHandler, Executor buildExecutor) {
+            this.loadFuture = loadFuture;
+            this.listener = listener;
+            this.timerHandler = timerHandler;
+            this.buildExecutor = buildExecutor;
+            // The handler only keeps time; the store is copied out on the build executor.
+            publishLater = () -> buildExecutor.execute(this::publishPending);
+        }
+
+        @Override
+        public synchronized void onEvents(EventStore newEvents) {
+            received.addAll(newEvents);
+            if (publishScheduled) {
+                return;
+            }
+            long delayMillis =
+                    lastPublishMillis + STREAMING_BATCH_MILLIS - SystemClock.uptimeMillis();
+            if (delayMillis <= 0) {
+                publish();
+            } else {
+                publishScheduled = true;
+                timerHandler.postDelayed(publishLater, delayMillis);
+            }
+        }
+
+        private synchronized void publishPending() {
+            publishScheduled = false;
+            if (!loadFuture.isDone()) {
+                publish();
+            }
+        }
+
+        @GuardedBy("this")
+        private void publish() {
+            lastPublishMillis = SystemClock.uptimeMillis();
+            EventStore partialEvents = received.build();
+            // Posted with the lock held, so bigger results can't overtake smaller ones.
+            UiThreadExecutor.INSTANCE.execute(() -> {
+                if (!loadFuture.isDone()) {
+                    listener.onPartialResult(partialEvents);
+                }
+            });
+        }
+    }
+
+    public interface QueryMetricsListener {
+        /**
+         * @param durationNanos time from issuing one calendar's query to reading its last row.
+         * @param rowCount      instances the query returned.
+         */
+        void onQuery(long durationNanos, int rowCount);
     }
 }
@@ -0,0 +1,297 @@
+package com.jonkimbel.calendarboy.input;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Loads events one local day at a time and caches the days in memory. Each request also
+ * prefetches the days just outside it, so stepping from one day to the next is normally served
+ * without waiting on the provider. Loaded days are evicted least-recently-used first once they
+ * exceed a byte budget, and {@link #invalidate} makes every cached day reload the next time it's
+ * asked for.
+ */
+class EventRangeLoader {
+    /** Days on each side of a request that are loaded in the background. */
+    static final int PREFETCH_DAYS = 1;
+
+    private final ZoneId zone;
+    private final DayQuery dayQuery;
+    private final long maxCacheBytes;
+
+    // Keyed by LocalDate.toEpochDay(), in access order. A failed load is removed so it's retried
+    // next time.
+    @GuardedBy("this")
+    private final LinkedHashMap<Long, Day> days = new LinkedHashMap<>(16, 0.75f, true);
+    // Sum of Day.sizeBytes over the map.
+    @GuardedBy("this")
+    private long cachedBytes = 0;
+    // Days loaded before the latest invalidate() have an older generation and count as stale.
+    @GuardedBy("this")
+    private int generation = 0;
+    // Days touched by the latest request; never evicted to make room.
+    @GuardedBy("this")
+    private long pinnedFirstDay;
+    @GuardedBy("this")
+    private long pinnedLastDay;
+
+    EventRangeLoader(ZoneId zone, DayQuery dayQuery, long maxCacheBytes) {
+        this.zone = zone;
+        this.dayQuery = dayQuery;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Returns the events overlapping [startMillis, endMillis), sorted by start time. Events that
+     * span several days appear once.
+     *
+     * @param batchListener if not null and some of the days are still loading, given the events
+     *                      in range as they arrive. What's already loaded is passed on first,
+     *                      before this returns, so the listener mustn't call back in.
+     */
+    synchronized ListenableFuture<EventStore> load(
+            long startMillis, long endMillis, @Nullable EventBatchListener batchListener) {
+        Preconditions.checkArgument(endMillis > startMillis);
+        long firstDay = toEpochDay(startMillis);
+        long lastDay = toEpochDay(endMillis - 1);
+        pinnedFirstDay = firstDay - PREFETCH_DAYS;
+        pinnedLastDay = lastDay + PREFETCH_DAYS;
+
+        List<Day> requestedDays = new ArrayList<>();
+        List<ListenableFuture<EventStore>> dayFutures = new ArrayList<>();
+        boolean allDone = true;
+        for (long day = firstDay; day <= lastDay; day++) {
+            Day loadedDay = getOrLoadDay(day);
+            requestedDays.add(loadedDay);
+            dayFutures.add(loadedDay.future);
+            allDone &= loadedDay.future.isDone();
+        }
+        if (batchListener != null && !allDone) {
+            for (int i = 0; i < requestedDays.size(); i++) {
+                Day day = requestedDays.get(i);
+                int dayOffset = i;
+                EventBatchListener dayListener = newEvents -> forwardInRange(
+                        newEvents, dayOffset, firstDay, startMillis, endMillis, batchListener);
+                if (day.future.isDone()) {
+                    dayListener.onEvents(isSuccessful(day.future)
+                            ? Futures.getUnchecked(day.future)
+                            : EventStore.EMPTY);
+                } else {
+                    dayListener.onEvents(day.loadedSoFar.build());
+                    day.progressListeners.add(dayListener);
+                }
+            }
+        }
+
+        // Queued behind the days that were asked for, so they don't delay them.
+        for (int i = 1; i <= PREFETCH_DAYS; i++) {
+            getOrLoadDay(lastDay + i);
+            getOrLoadDay(firstDay - i);
+        }
+        trimToBudget();
+
+        return Futures.transform(
+                Futures.allAsList(dayFutures),
+                stores -> merge(stores, firstDay, startMillis, endMillis),
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Marks every cached day stale. Nothing is queried here; a stale day is reloaded when a
+     * request next touches it, so only the days that are actually looked at again pay for it.
+     */
+    synchronized void invalidate() {
+        generation++;
+    }
+
+    @GuardedBy("this")
+    private Day getOrLoadDay(long epochDay) {
+        Day day = days.get(epochDay);
+        if (day != null && day.generation == generation) {
+            return day;
+        }
+        if (day != null) {
+            cachedBytes -= day.sizeBytes;
+        }
+
+        long dayStartMillis = startOfDayMillis(epochDay);
+        long dayEndMillis = startOfDayMillis(epochDay + 1);
+        Day loadingDay = new Day(generation);
+        days.put(epochDay, loadingDay);
+        loadingDay.future.setFuture(dayQuery.query(dayStartMillis, dayEndMillis,
+                newEvents -> onDayProgress(loadingDay, newEvents)));
+        loadingDay.future.addListener(
+                () -> onDayLoaded(epochDay, loadingDay), MoreExecutors.directExecutor());
+        return loadingDay;
+    }
+
+    private void onDayProgress(Day day, EventStore newEvents) {
+        List<EventBatchListener> listeners;
+        synchronized (this) {
+            if (day.loadedSoFar == null) {
+                return;  // Already loaded.
+            }
+            day.loadedSoFar.addAll(newEvents);
+            listeners = new ArrayList<>(day.progressListeners);
+        }
+        for (EventBatchListener listener : listeners) {
+            listener.onEvents(newEvents);
+        }
+    }
+
+    private synchronized void onDayLoaded(long epochDay, Day day) {
+        day.progressListeners.clear();
+        day.loadedSoFar = null;
+        if (days.get(epochDay) != day) {
+            return;  // Evicted or replaced while loading.
+        }
+        try {
+            day.sizeBytes = Futures.getDone(day.future).getEstimatedSizeBytes();
+            cachedBytes += day.sizeBytes;
+            trimToBudget();
+        } catch (ExecutionException | CancellationException e) {
+            days.remove(epochDay);
+        }
+    }
+
+    @GuardedBy("this")
+    private void trimToBudget() {
+        Iterator<Map.Entry<Long, Day>> iterator = days.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+            Map.Entry<Long, Day> entry = iterator.next();
+            long epochDay = entry.getKey();
+            if (epochDay >= pinnedFirstDay && epochDay <= pinnedLastDay) {
+                continue;
+            }
+            cachedBytes -= entry.getValue().sizeBytes;
+            iterator.remove();
+        }
+    }
+
+    @VisibleForTesting
+    synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Concatenates consecutive day buckets. Every bucket after the first only contributes events
+     * that start on its own day; anything that started earlier already came from an earlier
+     * bucket. That keeps the result sorted and free of duplicates.
+     */
+    private EventStore merge(List<EventStore> stores, long firstDay, long startMillis,
+                             long endMillis) {
+        if (stores.size() == 1 && coversExactlyOneDay(firstDay, startMillis, endMillis)) {
+            return stores.get(0);
+        }
+
+        int expectedSize = 0;
+        for (EventStore store : stores) {
+            expectedSize += store.size();
+        }
+        EventStore.Builder merged = new EventStore.Builder(expectedSize);
+        for (int i = 0; i < stores.size(); i++) {
+            addInRange(stores.get(i), i, firstDay, startMillis, endMillis, merged);
+        }
+        return merged.build();
+    }
+
+    /** Passes on the events from one day's batch that {@link #merge} would keep. */
+    private void forwardInRange(EventStore newEvents, int dayOffset, long firstDay,
+                                long startMillis, long endMillis, EventBatchListener listener) {
+        if (newEvents.isEmpty()) {
+            return;
+        }
+        if (dayOffset == 0 && coversExactlyOneDay(firstDay, startMillis, endMillis)) {
+            listener.onEvents(newEvents);
+            return;
+        }
+        EventStore.Builder inRange = new EventStore.Builder(newEvents.size());
+        addInRange(newEvents, dayOffset, firstDay, startMillis, endMillis, inRange);
+        if (inRange.size() > 0) {
+            listener.onEvents(inRange.build());
+        }
+    }
+
+    /** Adds the events from day {@code firstDay + dayOffset}'s bucket that belong in range. */
+    private void addInRange(EventStore store, int dayOffset, long firstDay, long startMillis,
+                            long endMillis, EventStore.Builder out) {
+        int from = dayOffset == 0
+                ? store.getFirstIndexEndingAfter(startMillis)
+                : store.getFirstIndexStartingAtOrAfter(startOfDayMillis(firstDay + dayOffset));
+        int to = store.getFirstIndexStartingAtOrAfter(endMillis);
+        for (int j = from; j < to; j++) {
+            if (store.getEndTimeMillis(j) > startMillis) {
+                out.add(store.getStartTimeMillis(j), store.getEndTimeMillis(j), store.getTitle(j));
+            }
+        }
+    }
+
+    private boolean coversExactlyOneDay(long epochDay, long startMillis, long endMillis) {
+        return startMillis == startOfDayMillis(epochDay)
+                && endMillis == startOfDayMillis(epochDay + 1);
+    }
+
+    long toEpochDay(long timeMillis) {
+        return Instant.ofEpochMilli(timeMillis).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    long startOfDayMillis(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static boolean isSuccessful(ListenableFuture<?> future) {
+        try {
+            Futures.getDone(future);
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    private static final class Day {
+        final SettableFuture<EventStore> future = SettableFuture.create();
+        final int generation;
+        // Zero until the load finishes.
+        @GuardedBy("EventRangeLoader.this")
+        long sizeBytes = 0;
+        // Every batch so far while loading, for requests that join part way; null once done.
+        @GuardedBy("EventRangeLoader.this")
+        EventStore.Builder loadedSoFar = new EventStore.Builder(0);
+        @GuardedBy("EventRangeLoader.this")
+        final List<EventBatchListener> progressListeners = new ArrayList<>();
+
+        Day(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    interface DayQuery {
+        /**
+         * Starts loading the events overlapping [startMillis, endMillis), sorted by start time.
+         * Called with the loader's lock held, so the work must happen elsewhere.
+         *
+         * @param progress may be given batches of new events, any number of times, before the
+         *                 returned future completes.
+         */
+        ListenableFuture<EventStore> query(long startMillis, long endMillis,
+                                           EventBatchListener progress);
+    }
+}
@@ -0,0 +1,84 @@
+package com.jonkimbel.calendarboy.input;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.jonkimbel.calendarboy.model.EventStore;
+import com.jonkimbel.calendarboy.model.EventStoreCodec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * The most recently loaded range of events, kept on disk so a cold start can draw something
+ * before the provider has answered. Writes are atomic, so a crash mid-write leaves the previous
+ * snapshot in place.
+ */
+class EventSnapshotFile {
+    private static final String TAG = "EventSnapshotFile";
+
+    private final AtomicFile file;
+
+    EventSnapshotFile(File file) {
+        this.file = new AtomicFile(file);
+    }
+
+    /**
+     * Returns the snapshot if it covers exactly [startMillis, endMillis), or null if there's no
+     * usable snapshot for that range.
+     */
+    @WorkerThread
+    @Nullable
+    synchronized EventStore read(long startMillis, long endMillis) {
+        try (FileInputStream input = file.openRead(); FileChannel channel = input.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until full.
+            }
+            buffer.flip();
+            if (buffer.getLong() != startMillis || buffer.getLong() != endMillis) {
+                return null;
+            }
+            return EventStoreCodec.decode(buffer);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    @WorkerThread
+    synchronized void write(long startMillis, long endMillis, EventStore events) {
+        ByteBuffer encoded = EventStoreCodec.encode(events);
+        ByteBuffer header = ByteBuffer.allocate(2 * 8).putLong(startMillis).putLong(endMillis);
+        header.flip();
+
+        FileOutputStream output = null;
+        try {
+            output = file.startWrite();
+            FileChannel channel = output.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            file.finishWrite(output);
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write snapshot", e);
+            if (output != null) {
+                file.failWrite(output);
+            }
+        }
+    }
+}
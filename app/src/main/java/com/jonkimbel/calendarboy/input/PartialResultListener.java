@@ -0,0 +1,12 @@
+package com.jonkimbel.calendarboy.input;
+
+import com.jonkimbel.calendarboy.model.EventStore;
+
+/** Receives the events loaded so far while a longer load is still running. */
+public interface PartialResultListener {
+    /**
+     * @param partialEvents everything loaded so far, sorted by start time. Each call supersedes
+     *                      the previous one.
+     */
+    void onPartialResult(EventStore partialEvents);
+}
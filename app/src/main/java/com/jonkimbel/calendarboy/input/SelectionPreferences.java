@@ -0,0 +1,91 @@
+package com.jonkimbel.calendarboy.input;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Arrays;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The account and calendars the user picked, kept across process restarts so a cold start can go
+ * straight to loading events. Changing the account forgets the calendars, since calendars belong
+ * to an account.
+ */
+public class SelectionPreferences {
+    private static final String PREFERENCES_NAME = "selection";
+    private static final String KEY_ACCOUNT_NAME = "account_name";
+    private static final String KEY_ACCOUNT_TYPE = "account_type";
+    private static final String KEY_CALENDAR_IDS = "calendar_ids";
+
+    private final SharedPreferences preferences;
+
+    /** Starts loading the preferences file in the background. */
+    public SelectionPreferences(Context context) {
+        this.preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Nullable
+    public String getAccountName() {
+        return preferences.getString(KEY_ACCOUNT_NAME, null);
+    }
+
+    @Nullable
+    public String getAccountType() {
+        return preferences.getString(KEY_ACCOUNT_TYPE, null);
+    }
+
+    public void setAccount(String accountName, String accountType) {
+        SharedPreferences.Editor editor = preferences.edit();
+        if (!accountName.equals(getAccountName()) || !accountType.equals(getAccountType())) {
+            editor.remove(KEY_CALENDAR_IDS);
+        }
+        editor.putString(KEY_ACCOUNT_NAME, accountName)
+                .putString(KEY_ACCOUNT_TYPE, accountType)
+                .apply();
+    }
+
+    public void clearAccount() {
+        preferences.edit()
+                .remove(KEY_ACCOUNT_NAME)
+                .remove(KEY_ACCOUNT_TYPE)
+                .remove(KEY_CALENDAR_IDS)
+                .apply();
+    }
+
+    /** Returns the selected calendars in ascending order, or null if none were picked. */
+    @Nullable
+    public long[] getCalendarIds() {
+        String calendarIds = preferences.getString(KEY_CALENDAR_IDS, null);
+        if (calendarIds == null || calendarIds.isEmpty()) {
+            return null;
+        }
+        String[] parts = calendarIds.split(",");
+        long[] parsed = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                parsed[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Arrays.sort(parsed);
+        return parsed;
+    }
+
+    public void setCalendarIds(long[] calendarIds) {
+        StringBuilder joined = new StringBuilder();
+        for (long calendarId : calendarIds) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(calendarId);
+        }
+        preferences.edit().putString(KEY_CALENDAR_IDS, joined.toString()).apply();
+    }
+
+    public void clearCalendarIds() {
+        preferences.edit().remove(KEY_CALENDAR_IDS).apply();
+    }
+}
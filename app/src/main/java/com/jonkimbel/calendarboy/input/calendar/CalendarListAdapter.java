@@ -1,23 +1,48 @@
 package com.jonkimbel.calendarboy.input.calendar;
 
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 
 import com.jonkimbel.calendarboy.R;
+import com.jonkimbel.calendarboy.concurrent.LayoutExecutor;
+import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
 import com.jonkimbel.calendarboy.model.Calendar;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+/**
+ * Checkable list of calendars. New lists are diffed against the current one in the background and
+ * applied as item changes. Binding a row only sets its text and check state.
+ */
 class CalendarListAdapter extends RecyclerView.Adapter<CalendarListAdapter.CalendarViewHolder> {
-    private List<Calendar> calendars = new ArrayList<>();
-    private ItemSelectedCallback callback;
+    private final Executor diffExecutor;
+    private List<Calendar> calendars = Collections.emptyList();
+    // Bumped by every updateData(), so a diff that's been superseded is dropped.
+    private int dataGeneration = 0;
+    // Keyed by calendar ID; the values are unused. Avoids boxing IDs on every bind.
+    private final LongSparseArray<Boolean> selectedIds = new LongSparseArray<>();
+    private SelectionChangedCallback callback;
+
+    CalendarListAdapter() {
+        this(LayoutExecutor.INSTANCE);
+    }
+
+    CalendarListAdapter(Executor diffExecutor) {
+        this.diffExecutor = diffExecutor;
+        setHasStableIds(true);
+    }
 
     @NonNull
     @Override
@@ -29,11 +54,8 @@ class CalendarListAdapter extends RecyclerView.Adapter<CalendarListAdapter.Calen
 
     @Override
     public void onBindViewHolder(@NonNull CalendarViewHolder holder, int position) {
-        holder.bind(() -> {
-            if (callback != null) {
-                callback.onItemSelect(calendars.get(position).getId());
-            }
-        }, calendars.get(position).getName());
+        Calendar calendar = calendars.get(position);
+        holder.bind(calendar.getName(), isSelected(calendar.getId()));
     }
 
     @Override
@@ -41,30 +63,138 @@ class CalendarListAdapter extends RecyclerView.Adapter<CalendarListAdapter.Calen
         return calendars.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return calendars.get(position).getId();
+    }
+
+    /**
+     * Replaces the list once it's been diffed against the current one. The selection callback is
+     * called when it's applied, since calendars that left the list no longer count as selected.
+     */
     void updateData(List<Calendar> calendars) {
-        this.calendars = calendars;
+        List<Calendar> oldCalendars = this.calendars;
+        List<Calendar> newCalendars = Collections.unmodifiableList(new ArrayList<>(calendars));
+        int generation = ++dataGeneration;
+        diffExecutor.execute(() -> {
+            DiffUtil.DiffResult diff =
+                    DiffUtil.calculateDiff(new CalendarDiff(oldCalendars, newCalendars));
+            UiThreadExecutor.INSTANCE.execute(() -> {
+                // A newer updateData() has superseded this one. Its diff was taken against the
+                // same old list, which is still the one applied, so this result is dropped.
+                if (generation != dataGeneration) {
+                    return;
+                }
+                this.calendars = newCalendars;
+                diff.dispatchUpdatesTo(this);
+                notifySelectionChanged();
+            });
+        });
+    }
+
+    void setSelectedIds(long[] calendarIds) {
+        selectedIds.clear();
+        for (long calendarId : calendarIds) {
+            selectedIds.put(calendarId, Boolean.TRUE);
+        }
         notifyDataSetChanged();
     }
 
-    void setCallback(ItemSelectedCallback callback) {
+    /** Returns the checked calendars that are in the list, in ascending order. */
+    long[] getSelectedIds() {
+        long[] calendarIds = new long[calendars.size()];
+        int count = 0;
+        for (Calendar calendar : calendars) {
+            if (isSelected(calendar.getId())) {
+                calendarIds[count++] = calendar.getId();
+            }
+        }
+        long[] selected = Arrays.copyOf(calendarIds, count);
+        Arrays.sort(selected);
+        return selected;
+    }
+
+    void setCallback(SelectionChangedCallback callback) {
         this.callback = callback;
     }
 
-    interface ItemSelectedCallback {
-        void onItemSelect(long calendarId);
+    private boolean isSelected(long calendarId) {
+        return selectedIds.indexOfKey(calendarId) >= 0;
+    }
+
+    private void toggle(int position) {
+        long calendarId = calendars.get(position).getId();
+        if (isSelected(calendarId)) {
+            selectedIds.delete(calendarId);
+        } else {
+            selectedIds.put(calendarId, Boolean.TRUE);
+        }
+        notifyItemChanged(position);
+        notifySelectionChanged();
+    }
+
+    private void notifySelectionChanged() {
+        if (callback != null) {
+            callback.onSelectionChanged(getSelectedIds());
+        }
+    }
+
+    interface SelectionChangedCallback {
+        void onSelectionChanged(long[] calendarIds);
     }
 
-    class CalendarViewHolder extends RecyclerView.ViewHolder {
+    class CalendarViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        private final CheckBox checkBox;
+        private final TextView nameView;
+
         CalendarViewHolder(@NonNull View itemView) {
             super(itemView);
+            checkBox = itemView.findViewById(R.id.item_checkbox);
+            nameView = itemView.findViewById(R.id.item_name);
+            itemView.setOnClickListener(this);
         }
 
-        void bind(Runnable onClick, CharSequence calendarName) {
-            Button button = itemView.findViewById(R.id.item_select_button);
-            button.setOnClickListener(view -> onClick.run());
-
-            TextView nameView = itemView.findViewById(R.id.item_name);
+        void bind(CharSequence calendarName, boolean selected) {
+            checkBox.setChecked(selected);
             nameView.setText(calendarName);
         }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                toggle(position);
+            }
+        }
+    }
+
+    private static final class CalendarDiff extends DiffUtil.Callback {
+        private final List<Calendar> oldCalendars;
+        private final List<Calendar> newCalendars;
+
+        CalendarDiff(List<Calendar> oldCalendars, List<Calendar> newCalendars) {
+            this.oldCalendars = oldCalendars;
+            this.newCalendars = newCalendars;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldCalendars.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newCalendars.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldCalendars.get(oldPosition).getId() == newCalendars.get(newPosition).getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return oldCalendars.get(oldPosition).equals(newCalendars.get(newPosition));
+        }
     }
 }
@@ -0,0 +1,131 @@
+package com.jonkimbel.calendarboy.input.calendar;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.jonkimbel.calendarboy.model.Calendar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * The calendars last seen for each account, so the picker can show its list straight away and
+ * refresh it in the background. Every account seen by this process is kept in memory; only the
+ * most recent one is kept on disk, since that's normally the only one anybody picks from.
+ */
+final class CalendarListCache {
+    private static final String TAG = "CalendarListCache";
+    private static final String FILE_NAME = "calendars.cache";
+    private static final int VERSION = 1;
+
+    @GuardedBy("CalendarListCache.class")
+    private static CalendarListCache instance;
+
+    private final AtomicFile file;
+    @GuardedBy("this")
+    private final Map<String, List<Calendar>> calendarsByAccount = new HashMap<>();
+
+    static synchronized CalendarListCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new CalendarListCache(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    private CalendarListCache(File file) {
+        this.file = new AtomicFile(file);
+    }
+
+    /** Returns the calendars last stored for the account, or null if there aren't any. */
+    @WorkerThread
+    @Nullable
+    synchronized List<Calendar> get(String accountName, String accountType) {
+        String key = toKey(accountName, accountType);
+        List<Calendar> calendars = calendarsByAccount.get(key);
+        if (calendars == null) {
+            calendars = read(accountName, accountType);
+            if (calendars != null) {
+                calendarsByAccount.put(key, calendars);
+            }
+        }
+        return calendars;
+    }
+
+    @WorkerThread
+    synchronized void put(String accountName, String accountType, List<Calendar> calendars) {
+        calendars = Collections.unmodifiableList(new ArrayList<>(calendars));
+        calendarsByAccount.put(toKey(accountName, accountType), calendars);
+        write(accountName, accountType, calendars);
+    }
+
+    @GuardedBy("this")
+    @Nullable
+    private List<Calendar> read(String accountName, String accountType) {
+        try (DataInputStream input =
+                     new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (input.readInt() != VERSION
+                    || !input.readUTF().equals(accountName)
+                    || !input.readUTF().equals(accountType)) {
+                return null;
+            }
+            int count = input.readInt();
+            List<Calendar> calendars = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+            for (int i = 0; i < count; i++) {
+                long id = input.readLong();
+                calendars.add(new Calendar(input.readUTF(), id));
+            }
+            return Collections.unmodifiableList(calendars);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable calendar list", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    @GuardedBy("this")
+    private void write(String accountName, String accountType, List<Calendar> calendars) {
+        FileOutputStream output = null;
+        try {
+            output = file.startWrite();
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+            data.writeInt(VERSION);
+            data.writeUTF(accountName);
+            data.writeUTF(accountType);
+            data.writeInt(calendars.size());
+            for (Calendar calendar : calendars) {
+                data.writeLong(calendar.getId());
+                data.writeUTF(calendar.getName() != null ? calendar.getName() : "");
+            }
+            data.flush();
+            file.finishWrite(output);
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write calendar list", e);
+            if (output != null) {
+                file.failWrite(output);
+            }
+        }
+    }
+
+    private static String toKey(String accountName, String accountType) {
+        return accountType + '\u0000' + accountName;
+    }
+}
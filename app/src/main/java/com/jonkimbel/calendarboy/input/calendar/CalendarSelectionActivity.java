@@ -6,17 +6,27 @@ import android.database.Cursor;
 import android.os.Bundle;
 import android.provider.CalendarContract.Calendars;
 
+import android.util.Log;
+
+import com.google.android.material.button.MaterialButton;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.jonkimbel.calendarboy.R;
+import com.jonkimbel.calendarboy.concurrent.IoExecutor;
+import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
 import com.jonkimbel.calendarboy.model.Calendar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+import androidx.annotation.WorkerThread;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 public class CalendarSelectionActivity extends AppCompatActivity {
+    private static final String TAG = "CalendarSelectionAct";
+
     private static final String[] CALENDAR_PROJECTION = new String[]{
             Calendars._ID,                           // 0
             Calendars.CALENDAR_DISPLAY_NAME,         // 1
@@ -25,13 +35,23 @@ public class CalendarSelectionActivity extends AppCompatActivity {
     private static final int CALENDAR_PROJECTION_ID = 0;
     private static final int CALENDAR_PROJECTION_DISPLAY_NAME = 1;
 
+    // An account's calendars, leaving out ones that have been deleted but not yet synced away.
+    // Shared with CalendarSelectionController, so nothing can be picked that it would then drop.
+    static final String ACCOUNT_CALENDARS_SELECTION = "("
+            + Calendars.ACCOUNT_NAME + " = ?) AND ("
+            + Calendars.ACCOUNT_TYPE + " = ?) AND ("
+            + Calendars.DELETED + " = 0)";
+
     // Activity API.
-    public static final String KEY_OUTPUT_CALENDAR_ID = "calendar_id";
+    public static final String KEY_OUTPUT_CALENDAR_IDS = "calendar_ids";
     public static final String KEY_INPUT_ACCOUNT_NAME = "account_name";
     public static final String KEY_INPUT_ACCOUNT_TYPE = "account_type";
+    public static final String KEY_INPUT_SELECTED_CALENDAR_IDS = "selected_calendar_ids";
 
     // View.
     private CalendarListAdapter calendarListAdapter;
+    // Set once the provider has answered; cached calendars arriving later are ignored.
+    private boolean showingFreshCalendars = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,17 +64,69 @@ public class CalendarSelectionActivity extends AppCompatActivity {
         calendarList.setLayoutManager(new LinearLayoutManager(this));
         calendarList.setAdapter(calendarListAdapter);
 
-        calendarListAdapter.setCallback(calendarId -> {
+        MaterialButton doneButton = findViewById(R.id.done_button);
+        calendarListAdapter.setCallback(
+                calendarIds -> doneButton.setEnabled(calendarIds.length > 0));
+        doneButton.setOnClickListener(view -> {
             Intent intent = new Intent();
-            intent.putExtra(KEY_OUTPUT_CALENDAR_ID, calendarId);
+            intent.putExtra(KEY_OUTPUT_CALENDAR_IDS, calendarListAdapter.getSelectedIds());
             setResult(RESULT_OK, intent);
             finish();
         });
 
         Intent intent = getIntent();
-        calendarListAdapter.updateData(getCalendars(
-                intent.getStringExtra(KEY_INPUT_ACCOUNT_NAME),
-                intent.getStringExtra(KEY_INPUT_ACCOUNT_TYPE)));
+        long[] selectedIds = intent.getLongArrayExtra(KEY_INPUT_SELECTED_CALENDAR_IDS);
+        if (selectedIds != null) {
+            calendarListAdapter.setSelectedIds(selectedIds);
+        }
+        loadCalendars(intent.getStringExtra(KEY_INPUT_ACCOUNT_NAME),
+                intent.getStringExtra(KEY_INPUT_ACCOUNT_TYPE));
+    }
+
+    /**
+     * Shows the calendars cached for the account while the provider is queried in the
+     * background, then replaces them with what the provider returns.
+     */
+    private void loadCalendars(String accountName, String accountType) {
+        CalendarListCache cache = CalendarListCache.getInstance(this);
+        ListenableFuture<List<Calendar>> cachedCalendars =
+                IoExecutor.INSTANCE.submit(() -> cache.get(accountName, accountType));
+        ListenableFuture<List<Calendar>> freshCalendars = IoExecutor.INSTANCE.submit(() -> {
+            List<Calendar> calendars = getCalendars(accountName, accountType);
+            cache.put(accountName, accountType, calendars);
+            return calendars;
+        });
+
+        cachedCalendars.addListener(() -> {
+            List<Calendar> calendars = getOrNull(cachedCalendars);
+            if (calendars != null && !showingFreshCalendars) {
+                showCalendars(calendars);
+            }
+        }, UiThreadExecutor.INSTANCE);
+        freshCalendars.addListener(() -> {
+            List<Calendar> calendars = getOrNull(freshCalendars);
+            if (calendars != null) {
+                showingFreshCalendars = true;
+                showCalendars(calendars);
+            }
+        }, UiThreadExecutor.INSTANCE);
+    }
+
+    private void showCalendars(List<Calendar> calendars) {
+        if (isDestroyed()) {
+            return;
+        }
+        // Enables the done button through the adapter's callback once the list is applied.
+        calendarListAdapter.updateData(calendars);
+    }
+
+    private static <T> T getOrNull(ListenableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.w(TAG, "Couldn't load calendars", e);
+            return null;
+        }
     }
 
     @Override
@@ -64,19 +136,17 @@ public class CalendarSelectionActivity extends AppCompatActivity {
     }
 
     @SuppressLint("MissingPermission") // We've already checked when this method is called.
+    @WorkerThread
     private List<Calendar> getCalendars(String accountName, String accountType) {
-        String selection = "("
-                + Calendars.ACCOUNT_NAME + " = ?) AND ("
-                + Calendars.ACCOUNT_TYPE + " = ?)";
         String[] selectionArgs = new String[]{accountName, accountType};
 
-        Cursor cursor = getContentResolver().query(
-                Calendars.CONTENT_URI, CALENDAR_PROJECTION, selection, selectionArgs, null);
-
         List<Calendar> calendars = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            calendars.add(new Calendar(cursor.getString(CALENDAR_PROJECTION_DISPLAY_NAME),
-                    cursor.getLong(CALENDAR_PROJECTION_ID)));
+        try (Cursor cursor = getContentResolver().query(Calendars.CONTENT_URI,
+                CALENDAR_PROJECTION, ACCOUNT_CALENDARS_SELECTION, selectionArgs, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                calendars.add(new Calendar(cursor.getString(CALENDAR_PROJECTION_DISPLAY_NAME),
+                        cursor.getLong(CALENDAR_PROJECTION_ID)));
+            }
         }
         return calendars;
     }
@@ -1,38 +1,67 @@
 package com.jonkimbel.calendarboy.input.calendar;
 
+import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Intent;
+import android.database.Cursor;
+import android.provider.CalendarContract.Calendars;
+import android.util.Log;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.jonkimbel.calendarboy.concurrent.IoExecutor;
+import com.jonkimbel.calendarboy.input.SelectionPreferences;
 import com.jonkimbel.calendarboy.input.api.SelectionController;
 import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
 import androidx.annotation.GuardedBy;
+import androidx.annotation.WorkerThread;
 import androidx.core.app.ActivityCompat;
 
 import static android.Manifest.permission.READ_CALENDAR;
 import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 import static com.jonkimbel.calendarboy.input.api.RequestCodes.READ_CALENDAR_RQ;
 import static com.jonkimbel.calendarboy.input.api.RequestCodes.SELECT_CALENDAR_RQ;
+import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.ACCOUNT_CALENDARS_SELECTION;
 import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.KEY_INPUT_ACCOUNT_NAME;
 import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.KEY_INPUT_ACCOUNT_TYPE;
-import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.KEY_OUTPUT_CALENDAR_ID;
+import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.KEY_INPUT_SELECTED_CALENDAR_IDS;
+import static com.jonkimbel.calendarboy.input.calendar.CalendarSelectionActivity.KEY_OUTPUT_CALENDAR_IDS;
 
 public class CalendarSelectionController implements SelectionController {
     private final static String TAG = "CalendarPermissionsCtrl";
 
     private final Activity activity;
+    private final SelectionPreferences preferences;
+    private final ListeningExecutorService ioExecutor;
 
     @GuardedBy("this")
     private Callback successCallback;
     @GuardedBy("this")
     private Runnable failureRunnable;
     @GuardedBy("this")
-    private Long calendarId;
+    private Runnable selectionInvalidatedRunnable;
     @GuardedBy("this")
     private AccountIdentifier accountToSelectCalendarFor;
+    // Calendars remembered from an earlier process are checked once, in the background.
+    @GuardedBy("this")
+    private boolean selectionValidated = false;
+
+    public CalendarSelectionController(Activity activity, SelectionPreferences preferences) {
+        this(activity, preferences, IoExecutor.INSTANCE);
+    }
 
-    public CalendarSelectionController(Activity activity) {
+    public CalendarSelectionController(Activity activity, SelectionPreferences preferences,
+                                       ListeningExecutorService ioExecutor) {
         this.activity = activity;
+        this.preferences = preferences;
+        this.ioExecutor = ioExecutor;
     }
 
     @Override
@@ -58,31 +87,60 @@ public class CalendarSelectionController implements SelectionController {
             return false;
         }
 
-        if (resultCode == Activity.RESULT_OK && data.hasExtra(KEY_OUTPUT_CALENDAR_ID)) {
-            calendarId = data.getLongExtra(KEY_OUTPUT_CALENDAR_ID, 0);
+        long[] calendarIds = resultCode == Activity.RESULT_OK
+                ? data.getLongArrayExtra(KEY_OUTPUT_CALENDAR_IDS)
+                : null;
+        if (calendarIds != null && calendarIds.length > 0) {
+            Arrays.sort(calendarIds);
+            preferences.setCalendarIds(calendarIds);
+            selectionValidated = true;
             if (successCallback != null) {
                 Callback callback = successCallback;
-                UiThreadExecutor.INSTANCE.execute(() -> callback.onCalendarSelected(calendarId));
+                UiThreadExecutor.INSTANCE.execute(
+                        () -> callback.onCalendarsSelected(calendarIds));
             }
         }
         successCallback = null;
         return true;
     }
 
-    public void setPermissionDeniedBehavior(Runnable runnable) {
+    public synchronized void setPermissionDeniedBehavior(Runnable runnable) {
         failureRunnable = runnable;
     }
 
-    public void getSelectionThenRun(Callback callback,
-                                    AccountIdentifier accountToSelectCalendarFor) {
-        if (calendarId == null) {
+    /**
+     * Runs on the UI thread if calendars remembered from an earlier process turn out to be gone
+     * (or their account is). They've been dropped from the selection by then, and if none are
+     * left the next {@link #getSelectionThenRun} asks the user again.
+     */
+    public synchronized void setSelectionInvalidatedBehavior(Runnable runnable) {
+        selectionInvalidatedRunnable = runnable;
+    }
+
+    /**
+     * Runs {@code callback} with the calendars picked earlier, possibly by a previous process, or
+     * asks the user to pick some. Remembered calendars are used straight away and checked against
+     * the provider in the background.
+     */
+    public synchronized void getSelectionThenRun(Callback callback,
+                                                 AccountIdentifier accountToSelectCalendarFor) {
+        long[] calendarIds = preferences.getCalendarIds();
+        boolean hasPermission = ActivityCompat.checkSelfPermission(activity, READ_CALENDAR)
+                == PERMISSION_GRANTED;
+        if (calendarIds == null || !hasPermission) {
             askForSelectionThenRun(callback, accountToSelectCalendarFor);
-        } else if (callback != null) {
-            UiThreadExecutor.INSTANCE.execute(() -> callback.onCalendarSelected(calendarId));
+            return;
+        }
+        if (!selectionValidated) {
+            selectionValidated = true;
+            validateSelection(calendarIds, accountToSelectCalendarFor);
+        }
+        if (callback != null) {
+            UiThreadExecutor.INSTANCE.execute(() -> callback.onCalendarsSelected(calendarIds));
         }
     }
 
-    public void askForSelectionThenRun(Callback callback,
+    public synchronized void askForSelectionThenRun(Callback callback,
                                        AccountIdentifier accountToSelectCalendarFor) {
         successCallback = callback;
         if (ActivityCompat.checkSelfPermission(activity, READ_CALENDAR) != PERMISSION_GRANTED) {
@@ -94,15 +152,90 @@ public class CalendarSelectionController implements SelectionController {
         }
     }
 
+    @GuardedBy("this")
+    private void validateSelection(long[] calendarIds, AccountIdentifier account) {
+        ContentResolver contentResolver = activity.getContentResolver();
+        ListenableFuture<Boolean> validFuture = ioExecutor.submit(() -> {
+            long[] existingIds = getCalendarIds(contentResolver, account);
+            if (existingIds.length == 0) {
+                preferences.clearAccount();
+                return false;
+            }
+            long[] keptIds = new long[calendarIds.length];
+            int keptCount = 0;
+            for (long calendarId : calendarIds) {
+                if (Arrays.binarySearch(existingIds, calendarId) >= 0) {
+                    keptIds[keptCount++] = calendarId;
+                }
+            }
+            if (keptCount == calendarIds.length) {
+                return true;
+            }
+            if (keptCount == 0) {
+                preferences.clearCalendarIds();
+            } else {
+                preferences.setCalendarIds(Arrays.copyOf(keptIds, keptCount));
+            }
+            return false;
+        });
+        validFuture.addListener(() -> {
+            Runnable invalidatedRunnable;
+            synchronized (this) {
+                invalidatedRunnable = selectionInvalidatedRunnable;
+            }
+            try {
+                if (!Futures.getDone(validFuture) && invalidatedRunnable != null) {
+                    invalidatedRunnable.run();
+                }
+            } catch (ExecutionException e) {
+                // Leave the selection alone; the event query will surface the same problem.
+                Log.w(TAG, "Couldn't validate the calendar selection", e.getCause());
+            }
+        }, UiThreadExecutor.INSTANCE);
+    }
+
+    /**
+     * Returns the IDs of {@code account}'s calendars in ascending order.
+     *
+     * @throws IOException if the provider can't be queried, which says nothing about whether
+     *                     the calendars still exist.
+     */
+    @SuppressLint("MissingPermission") // Checked before the selection is used.
+    @WorkerThread
+    private static long[] getCalendarIds(ContentResolver contentResolver,
+                                         AccountIdentifier account) throws IOException {
+        String[] selectionArgs = new String[]{account.getAccountName(), account.getAccountType()};
+
+        Cursor cursor = contentResolver.query(Calendars.CONTENT_URI, new String[]{Calendars._ID},
+                ACCOUNT_CALENDARS_SELECTION, selectionArgs, Calendars._ID + " ASC");
+        if (cursor == null) {
+            throw new IOException("Calendar provider unavailable");
+        }
+        try {
+            long[] calendarIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                calendarIds[i] = cursor.getLong(0);
+            }
+            return calendarIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
     private void showCalendarSelectionDialog(AccountIdentifier accountToSelectCalendarFor) {
         Intent intent = new Intent(activity, CalendarSelectionActivity.class);
         intent.putExtra(KEY_INPUT_ACCOUNT_NAME, accountToSelectCalendarFor.getAccountName());
         intent.putExtra(KEY_INPUT_ACCOUNT_TYPE, accountToSelectCalendarFor.getAccountType());
+        long[] selectedIds = preferences.getCalendarIds();
+        if (selectedIds != null) {
+            intent.putExtra(KEY_INPUT_SELECTED_CALENDAR_IDS, selectedIds);
+        }
         activity.startActivityForResult(intent, SELECT_CALENDAR_RQ);
     }
 
     public interface Callback {
-        void onCalendarSelected(Long calendarId);
+        /** @param calendarIds at least one calendar, in ascending order. */
+        void onCalendarsSelected(long[] calendarIds);
     }
 
     public static class AccountIdentifier {
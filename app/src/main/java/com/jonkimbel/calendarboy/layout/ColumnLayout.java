@@ -0,0 +1,97 @@
+package com.jonkimbel.calendarboy.layout;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Assigns overlapping events to side-by-side columns.
+ *
+ * <p>Events are swept in start order. A min-heap of the active events (by end time) says which
+ * columns have freed up, and a min-heap of free columns hands out the leftmost one, so columns
+ * are reused as soon as an event ends. A cluster is a maximal run of transitively overlapping
+ * events; when the sweep empties the active set, every event in the finished cluster gets the
+ * cluster's width. That keeps widths consistent within a cluster and makes the whole thing
+ * O(n log n).
+ */
+public final class ColumnLayout {
+    private final int[] columns;
+    private final int[] columnCounts;
+    private final int maxColumnCount;
+
+    private ColumnLayout(int[] columns, int[] columnCounts, int maxColumnCount) {
+        this.columns = columns;
+        this.columnCounts = columnCounts;
+        this.maxColumnCount = maxColumnCount;
+    }
+
+    /**
+     * @param startTimes event start times, sorted ascending. Only the first {@code count} entries
+     *                   are read.
+     * @param endTimes   event end times, parallel to {@code startTimes}. An event that ends when
+     *                   another starts doesn't overlap it.
+     */
+    public static ColumnLayout compute(long[] startTimes, long[] endTimes, int count) {
+        Preconditions.checkArgument(count <= startTimes.length && count <= endTimes.length);
+
+        int[] columns = new int[count];
+        int[] columnCounts = new int[count];
+        int maxColumnCount = 0;
+
+        IntMinHeap activeEventsByEndTime = new IntMinHeap(16);
+        IntMinHeap freeColumns = new IntMinHeap(16);
+        int clusterStart = 0;
+        int clusterColumnCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            Preconditions.checkArgument(i == 0 || startTimes[i - 1] <= startTimes[i],
+                    "Events must be sorted by start time");
+            long startTime = startTimes[i];
+
+            while (!activeEventsByEndTime.isEmpty()
+                    && activeEventsByEndTime.peekKey() <= startTime) {
+                int endedEvent = activeEventsByEndTime.poll();
+                freeColumns.add(columns[endedEvent], columns[endedEvent]);
+            }
+
+            if (activeEventsByEndTime.isEmpty()) {
+                finishCluster(columnCounts, clusterStart, i, clusterColumnCount);
+                maxColumnCount = Math.max(maxColumnCount, clusterColumnCount);
+                clusterStart = i;
+                clusterColumnCount = 0;
+                freeColumns.clear();
+            }
+
+            int column = freeColumns.isEmpty() ? clusterColumnCount++ : freeColumns.poll();
+            columns[i] = column;
+            activeEventsByEndTime.add(i, endTimes[i]);
+        }
+        finishCluster(columnCounts, clusterStart, count, clusterColumnCount);
+        maxColumnCount = Math.max(maxColumnCount, clusterColumnCount);
+
+        return new ColumnLayout(columns, columnCounts, maxColumnCount);
+    }
+
+    private static void finishCluster(int[] columnCounts, int from, int to, int columnCount) {
+        for (int i = from; i < to; i++) {
+            columnCounts[i] = columnCount;
+        }
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    /** Zero-based column of event {@code index}. */
+    public int getColumn(int index) {
+        return columns[index];
+    }
+
+    /** Number of columns in the cluster event {@code index} belongs to. */
+    public int getColumnCount(int index) {
+        return columnCounts[index];
+    }
+
+    /** Widest cluster, or 0 if there are no events. */
+    public int getMaxColumnCount() {
+        return maxColumnCount;
+    }
+}
@@ -0,0 +1,166 @@
+package com.jonkimbel.calendarboy.layout;
+
+import com.google.common.base.Preconditions;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * The part of the calendar layout that only depends on the events: which events fall in the day,
+ * which column each one is in, and where the hour boundaries are. Independent of the zoom window
+ * and view size, which {@link LayoutGeometry} applies on top. Immutable.
+ */
+public final class DayLayout {
+    private final long dayStartTimeMillis;
+    private final long dayEndTimeMillis;
+    private final int[] sourceIndices;
+    private final long[] startTimesMillis;
+    private final long[] endTimesMillis;
+    private final ColumnLayout columnLayout;
+    private final long dataStartTimeMillis;
+    private final long dataEndTimeMillis;
+    private final long[] dividerTimesMillis;
+
+    private DayLayout(long dayStartTimeMillis, long dayEndTimeMillis, int[] sourceIndices,
+                      long[] startTimesMillis, long[] endTimesMillis, ColumnLayout columnLayout,
+                      long dataStartTimeMillis, long dataEndTimeMillis,
+                      long[] dividerTimesMillis) {
+        this.dayStartTimeMillis = dayStartTimeMillis;
+        this.dayEndTimeMillis = dayEndTimeMillis;
+        this.sourceIndices = sourceIndices;
+        this.startTimesMillis = startTimesMillis;
+        this.endTimesMillis = endTimesMillis;
+        this.columnLayout = columnLayout;
+        this.dataStartTimeMillis = dataStartTimeMillis;
+        this.dataEndTimeMillis = dataEndTimeMillis;
+        this.dividerTimesMillis = dividerTimesMillis;
+    }
+
+    /**
+     * @param events         the events to lay out.
+     * @param dayStartMillis events ending at or before this are left out, and the others are
+     *                       capped to it for column assignment.
+     * @param dayEndMillis   events starting at or after this are left out, and the others are
+     *                       capped to it for column assignment.
+     * @param zone           time zone used to find hour boundaries.
+     */
+    public static DayLayout compute(EventStore events, long dayStartMillis, long dayEndMillis,
+                                    ZoneId zone) {
+        Preconditions.checkArgument(dayEndMillis > dayStartMillis);
+
+        // Keep the day's events. Only the events between these bounds can overlap the day.
+        int firstCandidate = events.getFirstIndexEndingAfter(dayStartMillis);
+        int endCandidate = events.getFirstIndexStartingAtOrAfter(dayEndMillis);
+        int[] sourceIndices = new int[Math.max(0, endCandidate - firstCandidate)];
+        int size = 0;
+        for (int i = firstCandidate; i < endCandidate; i++) {
+            if (events.getEndTimeMillis(i) <= dayStartMillis
+                    || events.getStartTimeMillis(i) >= dayEndMillis) {
+                continue;
+            }
+            sourceIndices[size++] = i;
+        }
+        sourceIndices = Arrays.copyOf(sourceIndices, size);
+
+        // Figure out start of first event and end of last event.
+        long[] startTimes = new long[size];
+        long[] endTimes = new long[size];
+        long[] cappedStartTimes = new long[size];
+        long[] cappedEndTimes = new long[size];
+        long minTimeMillis = Long.MAX_VALUE;
+        long maxTimeMillis = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            startTimes[i] = events.getStartTimeMillis(sourceIndices[i]);
+            endTimes[i] = events.getEndTimeMillis(sourceIndices[i]);
+            cappedStartTimes[i] = Math.max(startTimes[i], dayStartMillis);
+            cappedEndTimes[i] = Math.min(endTimes[i], dayEndMillis);
+            minTimeMillis = Math.min(minTimeMillis, cappedStartTimes[i]);
+            maxTimeMillis = Math.max(maxTimeMillis, cappedEndTimes[i]);
+        }
+        Preconditions.checkState(size == 0 || maxTimeMillis > minTimeMillis);
+
+        // Figure out how many columns to render.
+        ColumnLayout columnLayout = ColumnLayout.compute(cappedStartTimes, cappedEndTimes, size);
+
+        return new DayLayout(dayStartMillis, dayEndMillis, sourceIndices, startTimes, endTimes,
+                columnLayout, minTimeMillis, maxTimeMillis,
+                hourBoundaries(dayStartMillis, dayEndMillis, zone));
+    }
+
+    /** Hour boundaries strictly inside (start, end). */
+    private static long[] hourBoundaries(long startMillis, long endMillis, ZoneId zone) {
+        long[] boundaries = new long[8];
+        int count = 0;
+        for (ZonedDateTime boundary = ZonedDateTime.ofInstant(
+                        Instant.ofEpochMilli(startMillis), zone)
+                .truncatedTo(ChronoUnit.HOURS).plusHours(1);
+             boundary.toInstant().toEpochMilli() < endMillis;
+             boundary = boundary.plusHours(1)) {
+            if (count == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = boundary.toInstant().toEpochMilli();
+        }
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /** Number of events that fall in the day. */
+    public int size() {
+        return sourceIndices.length;
+    }
+
+    /** Index, in the store passed to {@link #compute}, of laid out event {@code index}. */
+    public int getSourceIndex(int index) {
+        return sourceIndices[index];
+    }
+
+    public long getStartTimeMillis(int index) {
+        return startTimesMillis[index];
+    }
+
+    public long getEndTimeMillis(int index) {
+        return endTimesMillis[index];
+    }
+
+    public int getColumn(int index) {
+        return columnLayout.getColumn(index);
+    }
+
+    public int getColumnCount(int index) {
+        return columnLayout.getColumnCount(index);
+    }
+
+    public int getMaxColumnCount() {
+        return columnLayout.getMaxColumnCount();
+    }
+
+    public long getDayStartTimeMillis() {
+        return dayStartTimeMillis;
+    }
+
+    public long getDayEndTimeMillis() {
+        return dayEndTimeMillis;
+    }
+
+    /** Start of the earliest event, capped to the day. Only meaningful if {@code size() > 0}. */
+    public long getDataStartTimeMillis() {
+        return dataStartTimeMillis;
+    }
+
+    /** End of the latest event, capped to the day. Only meaningful if {@code size() > 0}. */
+    public long getDataEndTimeMillis() {
+        return dataEndTimeMillis;
+    }
+
+    int getDividerCount() {
+        return dividerTimesMillis.length;
+    }
+
+    long getDividerTimeMillis(int index) {
+        return dividerTimesMillis[index];
+    }
+}
@@ -0,0 +1,95 @@
+package com.jonkimbel.calendarboy.layout;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of int values ordered by a long key, so the layout code can keep heaps of
+ * event indices or column numbers without boxing.
+ */
+final class IntMinHeap {
+    private int[] values;
+    private long[] keys;
+    private int size = 0;
+
+    IntMinHeap(int initialCapacity) {
+        values = new int[Math.max(1, initialCapacity)];
+        keys = new long[values.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(int value, long key) {
+        if (size == values.length) {
+            int newCapacity = values.length * 2;
+            int[] newValues = new int[newCapacity];
+            long[] newKeys = new long[newCapacity];
+            System.arraycopy(values, 0, newValues, 0, size);
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            values = newValues;
+            keys = newKeys;
+        }
+
+        // Sift up.
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            values[index] = values[parent];
+            keys[index] = keys[parent];
+            index = parent;
+        }
+        values[index] = value;
+        keys[index] = key;
+    }
+
+    long peekKey() {
+        checkNotEmpty();
+        return keys[0];
+    }
+
+    int poll() {
+        checkNotEmpty();
+        int result = values[0];
+        size--;
+        if (size == 0) {
+            return result;
+        }
+
+        // Move the last element to the root and sift it down.
+        int value = values[size];
+        long key = keys[size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            values[index] = values[child];
+            keys[index] = keys[child];
+            index = child;
+        }
+        values[index] = value;
+        keys[index] = key;
+        return result;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.jonkimbel.calendarboy.layout;
+
+/**
+ * Pixel geometry of a {@link DayLayout} for a time window and {@link Viewport}. Results are kept
+ * in flat float arrays that are reused across updates, so re-running {@link #update} for a new
+ * zoom window doesn't allocate once the arrays are big enough.
+ *
+ * <p>Times map to y positions linearly: the window start sits at the top padding and the window
+ * end at the bottom padding. Events outside the window get positions outside the viewport and
+ * it's up to the caller to clip them.
+ *
+ * <p>Events come in start time order, so their tops never decrease. Together with a running
+ * maximum of their bottoms that gives a spatial index: {@link #getFirstIndexEndingBelow} and
+ * {@link #getFirstIndexStartingAtOrBelow} bound the events crossing any horizontal band with two
+ * binary searches, so drawing only touches what's on screen.
+ */
+public final class LayoutGeometry {
+    private static final int RECT_STRIDE = 4;
+    private static final int LEFT = 0;
+    private static final int TOP = 1;
+    private static final int RIGHT = 2;
+    private static final int BOTTOM = 3;
+
+    private long windowStartTimeMillis;
+    private float yOfWindowStart;
+    private float pxHeightPerMillisecond;
+
+    private float[] pxWidthPerNumOtherColumns = new float[0];
+    private float[] eventRects = new float[0];
+    // maxBottoms[i] is the lowest bottom among events 0..i, so it never decreases.
+    private float[] maxBottoms = new float[0];
+    private int eventCount = 0;
+    private float[] dividerYPositions = new float[0];
+    private int dividerCount = 0;
+
+    public void update(DayLayout dayLayout, long windowStartTimeMillis, long windowEndTimeMillis,
+                       Viewport viewport) {
+        eventCount = 0;
+        dividerCount = 0;
+        if (windowEndTimeMillis <= windowStartTimeMillis) {
+            return;
+        }
+
+        float paddingPx = viewport.getPaddingPx();
+        this.windowStartTimeMillis = windowStartTimeMillis;
+        this.yOfWindowStart = viewport.getTop() + paddingPx;
+        this.pxHeightPerMillisecond = (viewport.getHeight() - 2 * paddingPx)
+                / (windowEndTimeMillis - windowStartTimeMillis);
+
+        int columnsToRender = dayLayout.getMaxColumnCount();
+        if (pxWidthPerNumOtherColumns.length < columnsToRender) {
+            pxWidthPerNumOtherColumns = new float[columnsToRender];
+        }
+        for (int i = 0; i < columnsToRender; i++) {
+            pxWidthPerNumOtherColumns[i] =
+                    (viewport.getWidth() - 2 * paddingPx - i * paddingPx) / (i + 1);
+        }
+
+        if (eventRects.length < dayLayout.size() * RECT_STRIDE) {
+            eventRects = new float[dayLayout.size() * RECT_STRIDE];
+            maxBottoms = new float[dayLayout.size()];
+        }
+        float maxBottom = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < dayLayout.size(); i++) {
+            float width = pxWidthPerNumOtherColumns[dayLayout.getColumnCount(i) - 1];
+            float left = viewport.getLeft() + paddingPx +
+                    (width + paddingPx) * dayLayout.getColumn(i);
+            int offset = i * RECT_STRIDE;
+            eventRects[offset + LEFT] = left;
+            eventRects[offset + TOP] = timeToY(dayLayout.getStartTimeMillis(i));
+            eventRects[offset + RIGHT] = left + width;
+            eventRects[offset + BOTTOM] = timeToY(dayLayout.getEndTimeMillis(i));
+            maxBottom = Math.max(maxBottom, eventRects[offset + BOTTOM]);
+            maxBottoms[i] = maxBottom;
+        }
+        eventCount = dayLayout.size();
+
+        if (dividerYPositions.length < dayLayout.getDividerCount()) {
+            dividerYPositions = new float[dayLayout.getDividerCount()];
+        }
+        for (int i = 0; i < dayLayout.getDividerCount(); i++) {
+            long dividerTime = dayLayout.getDividerTimeMillis(i);
+            if (dividerTime <= windowStartTimeMillis || dividerTime >= windowEndTimeMillis) {
+                continue;
+            }
+            dividerYPositions[dividerCount++] = timeToY(dividerTime);
+        }
+    }
+
+    /** Forgets any previous result, e.g. because there's nothing to lay out. */
+    public void clear() {
+        eventCount = 0;
+        dividerCount = 0;
+    }
+
+    /** Maps a time to a y position using the window from the last {@link #update}. */
+    public float timeToY(long timeMillis) {
+        return yOfWindowStart + pxHeightPerMillisecond * (timeMillis - windowStartTimeMillis);
+    }
+
+    /** Number of event rects, parallel to the events of the last {@link DayLayout}. */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public float getLeft(int index) {
+        return eventRects[index * RECT_STRIDE + LEFT];
+    }
+
+    public float getTop(int index) {
+        return eventRects[index * RECT_STRIDE + TOP];
+    }
+
+    public float getRight(int index) {
+        return eventRects[index * RECT_STRIDE + RIGHT];
+    }
+
+    public float getBottom(int index) {
+        return eventRects[index * RECT_STRIDE + BOTTOM];
+    }
+
+    /**
+     * Returns the index of the first event whose bottom is below {@code y}; every event before it
+     * ends at or above {@code y}. Later ones may not reach below {@code y} either (a tall event
+     * can hide short ones after it), so check each. O(log n).
+     */
+    public int getFirstIndexEndingBelow(float y) {
+        int low = 0;
+        int high = eventCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxBottoms[mid] > y) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first event whose top is at or below {@code y}, i.e. the number of
+     * events that start above it. O(log n).
+     */
+    public int getFirstIndexStartingAtOrBelow(float y) {
+        int low = 0;
+        int high = eventCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (eventRects[mid * RECT_STRIDE + TOP] >= y) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /** Number of hour dividers strictly inside the window. */
+    public int getDividerCount() {
+        return dividerCount;
+    }
+
+    public float getDividerY(int index) {
+        return dividerYPositions[index];
+    }
+}
@@ -0,0 +1,42 @@
+package com.jonkimbel.calendarboy.layout;
+
+/** The box events are laid out in, in pixels. Immutable. */
+public final class Viewport {
+    private final float left;
+    private final float top;
+    private final float width;
+    private final float height;
+    private final float paddingPx;
+
+    /**
+     * @param paddingPx space kept between the edges of the box and the events, and between
+     *                  adjacent columns.
+     */
+    public Viewport(float left, float top, float width, float height, float paddingPx) {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.paddingPx = paddingPx;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public float getPaddingPx() {
+        return paddingPx;
+    }
+}
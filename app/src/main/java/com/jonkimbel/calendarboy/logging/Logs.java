@@ -0,0 +1,30 @@
+package com.jonkimbel.calendarboy.logging;
+
+import android.util.Log;
+
+import com.jonkimbel.calendarboy.BuildConfig;
+
+/**
+ * Verbose logging that costs nothing in builds that turn it off. Guard each call site, including
+ * any string building, with {@link #VERBOSE}:
+ *
+ * <pre>
+ *     if (Logs.VERBOSE) {
+ *         Logs.v(TAG, "Loaded " + count + " events");
+ *     }
+ * </pre>
+ *
+ * <p>{@link #VERBOSE} is a compile-time constant set per build type, so javac drops the guarded
+ * block from builds where it's false. (BuildConfig.DEBUG isn't a constant, so it can't do this.)
+ */
+public final class Logs {
+    public static final boolean VERBOSE = BuildConfig.VERBOSE_LOGGING;
+
+    private Logs() {}
+
+    public static void v(String tag, String message) {
+        if (VERBOSE) {
+            Log.v(tag, message);
+        }
+    }
+}
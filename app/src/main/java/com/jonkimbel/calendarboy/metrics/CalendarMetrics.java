@@ -0,0 +1,80 @@
+package com.jonkimbel.calendarboy.metrics;
+
+import com.jonkimbel.calendarboy.input.EventDataController;
+import com.jonkimbel.calendarboy.view.CalendarView;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.GuardedBy;
+
+/**
+ * Collects {@link CalendarView} and {@link EventDataController} timings into histograms. Safe to
+ * register with both at once; the getters return copies.
+ */
+public class CalendarMetrics
+        implements CalendarView.MetricsListener, EventDataController.QueryMetricsListener {
+    @GuardedBy("this")
+    private final Histogram layoutDurationsMicros = new Histogram();
+    @GuardedBy("this")
+    private final Histogram drawDurationsMicros = new Histogram();
+    @GuardedBy("this")
+    private final Histogram eventCounts = new Histogram();
+    @GuardedBy("this")
+    private final Histogram columnCounts = new Histogram();
+    @GuardedBy("this")
+    private final Histogram queryLatenciesMicros = new Histogram();
+
+    @Override
+    public synchronized void onLayout(long durationNanos, int eventCount, int columnCount) {
+        layoutDurationsMicros.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        eventCounts.record(eventCount);
+        columnCounts.record(columnCount);
+    }
+
+    @Override
+    public synchronized void onDraw(long durationNanos) {
+        drawDurationsMicros.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    @Override
+    public synchronized void onQuery(long durationNanos, int rowCount) {
+        queryLatenciesMicros.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    public synchronized Histogram getLayoutDurationsMicros() {
+        return layoutDurationsMicros.copy();
+    }
+
+    public synchronized Histogram getDrawDurationsMicros() {
+        return drawDurationsMicros.copy();
+    }
+
+    public synchronized Histogram getEventCounts() {
+        return eventCounts.copy();
+    }
+
+    public synchronized Histogram getColumnCounts() {
+        return columnCounts.copy();
+    }
+
+    public synchronized Histogram getQueryLatenciesMicros() {
+        return queryLatenciesMicros.copy();
+    }
+
+    public synchronized void clear() {
+        layoutDurationsMicros.clear();
+        drawDurationsMicros.clear();
+        eventCounts.clear();
+        columnCounts.clear();
+        queryLatenciesMicros.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "layout us: " + layoutDurationsMicros
+                + "\ndraw us: " + drawDurationsMicros
+                + "\nevents: " + eventCounts
+                + "\ncolumns: " + columnCounts
+                + "\nquery us: " + queryLatenciesMicros;
+    }
+}
@@ -0,0 +1,91 @@
+package com.jonkimbel.calendarboy.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values in power-of-two buckets: bucket 0 holds 0 and 1, bucket {@code i}
+ * holds [2^i, 2^(i+1)). Recording is a couple of array writes and never allocates, so it's fine
+ * on the draw path. Percentiles are only accurate to within a factor of two. Not thread-safe.
+ */
+public final class Histogram {
+    private static final int BUCKET_COUNT = 64;
+
+    private final long[] bucketCounts = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /** Negative values count as zero. */
+    public void record(long value) {
+        value = Math.max(0, value);
+        bucketCounts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /** Returns the mean, or 0 if nothing has been recorded. */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns an upper bound for the value at {@code percentile} (0 to 100): the top of the
+     * bucket it falls in, capped at the largest value seen. 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 100);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(max, bucketUpperBound(i));
+            }
+        }
+        return max;
+    }
+
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        System.arraycopy(bucketCounts, 0, copy.bucketCounts, 0, BUCKET_COUNT);
+        copy.count = count;
+        copy.sum = sum;
+        copy.max = max;
+        return copy;
+    }
+
+    public void clear() {
+        Arrays.fill(bucketCounts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " p50=" + getPercentile(50) + " p90=" + getPercentile(90)
+                + " p99=" + getPercentile(99) + " max=" + max;
+    }
+
+    private static int bucketOf(long value) {
+        return value <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        return bucket >= 62 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+}
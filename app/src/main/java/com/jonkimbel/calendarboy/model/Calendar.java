@@ -1,5 +1,7 @@
 package com.jonkimbel.calendarboy.model;
 
+import java.util.Objects;
+
 public class Calendar {
     private final String name;
     private final long id;
@@ -16,4 +18,21 @@ public class Calendar {
     public long getId() {
         return id;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Calendar)) {
+            return false;
+        }
+        Calendar other = (Calendar) o;
+        return id == other.id && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, id);
+    }
 }
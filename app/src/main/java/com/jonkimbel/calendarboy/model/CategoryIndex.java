@@ -0,0 +1,50 @@
+package com.jonkimbel.calendarboy.model;
+
+/**
+ * The events of an {@link EventStore} that belong to each category, in start time order. Each
+ * distinct title is matched once when the index is built, so asking for a category's events
+ * afterwards never looks at a title again.
+ */
+public final class CategoryIndex {
+    // eventIndices[c] are the store indices of category c's events.
+    private final int[][] eventIndices;
+
+    public CategoryIndex(EventStore events, KeywordMatcher matcher, int categoryCount) {
+        int[] titleCategories = new int[events.getDistinctTitleCount()];
+        for (int i = 0; i < titleCategories.length; i++) {
+            titleCategories[i] = matcher.match(events.getDistinctTitle(i));
+        }
+
+        int[] counts = new int[categoryCount];
+        for (int i = 0; i < events.size(); i++) {
+            int categories = titleCategories[events.getTitleIndex(i)];
+            for (int category = 0; category < categoryCount; category++) {
+                if ((categories & (1 << category)) != 0) {
+                    counts[category]++;
+                }
+            }
+        }
+        eventIndices = new int[categoryCount][];
+        for (int category = 0; category < categoryCount; category++) {
+            eventIndices[category] = new int[counts[category]];
+            counts[category] = 0;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            int categories = titleCategories[events.getTitleIndex(i)];
+            for (int category = 0; category < categoryCount; category++) {
+                if ((categories & (1 << category)) != 0) {
+                    eventIndices[category][counts[category]++] = i;
+                }
+            }
+        }
+    }
+
+    public int getEventCount(int category) {
+        return eventIndices[category].length;
+    }
+
+    /** Index in the store of the {@code position}th event of {@code category}. */
+    public int getEventIndex(int category, int position) {
+        return eventIndices[category][position];
+    }
+}
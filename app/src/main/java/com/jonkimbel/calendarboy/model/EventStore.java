@@ -0,0 +1,417 @@
+package com.jonkimbel.calendarboy.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, column-oriented list of events sorted by {@link Event#compare}. Times are kept in
+ * primitive arrays and each distinct title is stored once, so a large load costs a handful of
+ * arrays instead of an object per event. {@link #get} and {@link #asList} give {@link Event}
+ * views for code that wants objects.
+ */
+public final class EventStore {
+    public static final EventStore EMPTY = new Builder(0).build();
+
+    private final long[] startTimesMillis;
+    private final long[] endTimesMillis;
+    private final int[] titleIndices;
+    private final String[] titles;
+    // maxEndTimesMillis[i] is the latest end among events 0..i, so it never decreases.
+    private final long[] maxEndTimesMillis;
+    private final long estimatedSizeBytes;
+
+    // Takes ownership of the arrays, which must already be sorted.
+    EventStore(long[] startTimesMillis, long[] endTimesMillis, int[] titleIndices,
+               String[] titles) {
+        this.startTimesMillis = startTimesMillis;
+        this.endTimesMillis = endTimesMillis;
+        this.titleIndices = titleIndices;
+        this.titles = titles;
+        this.maxEndTimesMillis = new long[endTimesMillis.length];
+        long maxEndTimeMillis = Long.MIN_VALUE;
+        for (int i = 0; i < endTimesMillis.length; i++) {
+            maxEndTimeMillis = Math.max(maxEndTimeMillis, endTimesMillis[i]);
+            maxEndTimesMillis[i] = maxEndTimeMillis;
+        }
+        this.estimatedSizeBytes = estimateSizeBytes();
+    }
+
+    public int size() {
+        return startTimesMillis.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long getStartTimeMillis(int index) {
+        return startTimesMillis[index];
+    }
+
+    public long getEndTimeMillis(int index) {
+        return endTimesMillis[index];
+    }
+
+    public String getTitle(int index) {
+        return titles[titleIndices[index]];
+    }
+
+    /** Index into the distinct titles. Events with equal titles have equal indices. */
+    public int getTitleIndex(int index) {
+        return titleIndices[index];
+    }
+
+    public int getDistinctTitleCount() {
+        return titles.length;
+    }
+
+    /** @param titleIndex a value returned by {@link #getTitleIndex}. */
+    public String getDistinctTitle(int titleIndex) {
+        return titles[titleIndex];
+    }
+
+    /** Rough heap footprint of this store, for cache budgeting. */
+    public long getEstimatedSizeBytes() {
+        return estimatedSizeBytes;
+    }
+
+    /**
+     * Returns the index of the first event that ends after {@code timeMillis}; every event before
+     * it ends at or before {@code timeMillis}. Later events aren't guaranteed to end after it, a
+     * long event can hide shorter ones that follow, so callers still check each one. O(log n).
+     */
+    public int getFirstIndexEndingAfter(long timeMillis) {
+        int low = 0;
+        int high = maxEndTimesMillis.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEndTimesMillis[mid] > timeMillis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first event that starts at or after {@code timeMillis}, i.e. the
+     * number of events starting before it. O(log n).
+     */
+    public int getFirstIndexStartingAtOrAfter(long timeMillis) {
+        int low = 0;
+        int high = startTimesMillis.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startTimesMillis[mid] >= timeMillis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /** Returns a new {@link Event} for the event at {@code index}. */
+    public Event get(int index) {
+        return new Event(startTimesMillis[index], endTimesMillis[index], getTitle(index));
+    }
+
+    /** Read-only {@link List} view; elements are created on access. */
+    public List<Event> asList() {
+        return new EventListView();
+    }
+
+    /**
+     * Merges sorted stores, e.g. one per calendar, into one sorted store with a k-way merge, so
+     * the cost is O(n log k) rather than a sort of everything.
+     */
+    public static EventStore merge(List<EventStore> stores) {
+        int totalSize = 0;
+        int nonEmptyCount = 0;
+        EventStore onlyNonEmpty = EMPTY;
+        for (EventStore store : stores) {
+            totalSize += store.size();
+            if (!store.isEmpty()) {
+                nonEmptyCount++;
+                onlyNonEmpty = store;
+            }
+        }
+        if (nonEmptyCount <= 1) {
+            return onlyNonEmpty;
+        }
+
+        // Min-heap of the stores that still have events, ordered by their next event.
+        EventStore[] heap = new EventStore[nonEmptyCount];
+        int[] positions = new int[nonEmptyCount];
+        int heapSize = 0;
+        for (EventStore store : stores) {
+            if (!store.isEmpty()) {
+                heap[heapSize] = store;
+                siftUp(heap, positions, heapSize);
+                heapSize++;
+            }
+        }
+
+        Builder merged = new Builder(totalSize);
+        while (heapSize > 0) {
+            EventStore store = heap[0];
+            int position = positions[0];
+            merged.add(store.startTimesMillis[position], store.endTimesMillis[position],
+                    store.getTitle(position));
+            if (position + 1 < store.size()) {
+                positions[0] = position + 1;
+            } else {
+                heapSize--;
+                heap[0] = heap[heapSize];
+                positions[0] = positions[heapSize];
+                heap[heapSize] = null;
+            }
+            siftDown(heap, positions, heapSize);
+        }
+        return merged.build();
+    }
+
+    private static void siftUp(EventStore[] heap, int[] positions, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compareHeads(heap, positions, parent, index) <= 0) {
+                return;
+            }
+            swap(heap, positions, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(EventStore[] heap, int[] positions, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && compareHeads(heap, positions, left, smallest) < 0) {
+                smallest = left;
+            }
+            if (right < size && compareHeads(heap, positions, right, smallest) < 0) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, positions, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static int compareHeads(EventStore[] heap, int[] positions, int lh, int rh) {
+        long lhStart = heap[lh].startTimesMillis[positions[lh]];
+        long rhStart = heap[rh].startTimesMillis[positions[rh]];
+        if (lhStart != rhStart) {
+            return lhStart < rhStart ? -1 : 1;
+        }
+        long lhEnd = heap[lh].endTimesMillis[positions[lh]];
+        long rhEnd = heap[rh].endTimesMillis[positions[rh]];
+        if (lhEnd != rhEnd) {
+            return lhEnd < rhEnd ? -1 : 1;
+        }
+        return 0;
+    }
+
+    private static void swap(EventStore[] heap, int[] positions, int i, int j) {
+        EventStore store = heap[i];
+        heap[i] = heap[j];
+        heap[j] = store;
+        int position = positions[i];
+        positions[i] = positions[j];
+        positions[j] = position;
+    }
+
+    /** Equal if both hold the same events in the same order. */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof EventStore)) {
+            return false;
+        }
+        EventStore otherStore = (EventStore) other;
+        if (!Arrays.equals(startTimesMillis, otherStore.startTimesMillis)
+                || !Arrays.equals(endTimesMillis, otherStore.endTimesMillis)) {
+            return false;
+        }
+        for (int i = 0; i < size(); i++) {
+            if (!getTitle(i).equals(otherStore.getTitle(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(startTimesMillis) + Arrays.hashCode(endTimesMillis);
+    }
+
+    private long estimateSizeBytes() {
+        // Object and array headers are ~16 bytes; each String also carries a char array.
+        long bytes = 16 + 5 * 16 + size() * (8L + 8L + 8L + 4L) + titles.length * 4L;
+        for (String title : titles) {
+            bytes += 16 + 16 + 2L * title.length();
+        }
+        return bytes;
+    }
+
+    private class EventListView extends AbstractList<Event> implements RandomAccess {
+        @Override
+        public Event get(int index) {
+            return EventStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return EventStore.this.size();
+        }
+    }
+
+    /**
+     * Accumulates events, in any order, into an {@link EventStore}. {@link #build} can be called
+     * again as more events arrive; it only sorts the ones added since the last call and merges
+     * them into the rest. Not thread-safe.
+     */
+    public static final class Builder {
+        private long[] startTimesMillis;
+        private long[] endTimesMillis;
+        private int[] titleIndices;
+        private final Map<String, Integer> titleIndicesByTitle = new HashMap<>();
+        private String[] titles = new String[16];
+        private int size = 0;
+        // Events [0, sortedSize) are in order.
+        private int sortedSize = 0;
+
+        /** @param expectedSize how many events to make room for up front. */
+        public Builder(int expectedSize) {
+            startTimesMillis = new long[expectedSize];
+            endTimesMillis = new long[expectedSize];
+            titleIndices = new int[expectedSize];
+        }
+
+        public Builder add(long startTimeMillis, long endTimeMillis, String title) {
+            ensureCapacity(size + 1);
+            addInterned(startTimeMillis, endTimeMillis, internTitle(title == null ? "" : title));
+            return this;
+        }
+
+        /** Adds every event in {@code events}, interning each distinct title once. */
+        public Builder addAll(EventStore events) {
+            int[] titleIndexMap = new int[events.titles.length];
+            for (int i = 0; i < titleIndexMap.length; i++) {
+                titleIndexMap[i] = internTitle(events.titles[i]);
+            }
+            ensureCapacity(size + events.size());
+            for (int i = 0; i < events.size(); i++) {
+                addInterned(events.startTimesMillis[i], events.endTimesMillis[i],
+                        titleIndexMap[events.titleIndices[i]]);
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public EventStore build() {
+            if (sortedSize < size) {
+                // Rows usually arrive in order, so this is the uncommon path.
+                sortUnsortedTail();
+            }
+            return new EventStore(
+                    Arrays.copyOf(startTimesMillis, size),
+                    Arrays.copyOf(endTimesMillis, size),
+                    Arrays.copyOf(titleIndices, size),
+                    Arrays.copyOf(titles, titleIndicesByTitle.size()));
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > startTimesMillis.length) {
+                int newCapacity = Math.max(capacity, Math.max(16, size * 2));
+                startTimesMillis = Arrays.copyOf(startTimesMillis, newCapacity);
+                endTimesMillis = Arrays.copyOf(endTimesMillis, newCapacity);
+                titleIndices = Arrays.copyOf(titleIndices, newCapacity);
+            }
+        }
+
+        private void addInterned(long startTimeMillis, long endTimeMillis, int titleIndex) {
+            if (sortedSize == size
+                    && (size == 0 || compare(size - 1, startTimeMillis, endTimeMillis) <= 0)) {
+                sortedSize++;
+            }
+            startTimesMillis[size] = startTimeMillis;
+            endTimesMillis[size] = endTimeMillis;
+            titleIndices[size] = titleIndex;
+            size++;
+        }
+
+        /** Sorts events [sortedSize, size) and merges them into the sorted ones before them. */
+        private void sortUnsortedTail() {
+            int tailSize = size - sortedSize;
+            Integer[] tail = new Integer[tailSize];
+            for (int i = 0; i < tailSize; i++) {
+                tail[i] = sortedSize + i;
+            }
+            Arrays.sort(tail, (lh, rh) -> compare(lh, startTimesMillis[rh], endTimesMillis[rh]));
+
+            int capacity = startTimesMillis.length;
+            long[] mergedStartTimes = new long[capacity];
+            long[] mergedEndTimes = new long[capacity];
+            int[] mergedTitleIndices = new int[capacity];
+            int head = 0;
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                int from;
+                // Ties go to the sorted events, which were added first.
+                if (next == tailSize || (head < sortedSize && compare(head,
+                        startTimesMillis[tail[next]], endTimesMillis[tail[next]]) <= 0)) {
+                    from = head++;
+                } else {
+                    from = tail[next++];
+                }
+                mergedStartTimes[i] = startTimesMillis[from];
+                mergedEndTimes[i] = endTimesMillis[from];
+                mergedTitleIndices[i] = titleIndices[from];
+            }
+            startTimesMillis = mergedStartTimes;
+            endTimesMillis = mergedEndTimes;
+            titleIndices = mergedTitleIndices;
+            sortedSize = size;
+        }
+
+        private int compare(int index, long startTimeMillis, long endTimeMillis) {
+            if (startTimesMillis[index] != startTimeMillis) {
+                return startTimesMillis[index] < startTimeMillis ? -1 : 1;
+            }
+            if (endTimesMillis[index] != endTimeMillis) {
+                return endTimesMillis[index] < endTimeMillis ? -1 : 1;
+            }
+            return 0;
+        }
+
+        private int internTitle(String title) {
+            Integer titleIndex = titleIndicesByTitle.get(title);
+            if (titleIndex != null) {
+                return titleIndex;
+            }
+            int newIndex = titleIndicesByTitle.size();
+            if (newIndex == titles.length) {
+                titles = Arrays.copyOf(titles, newIndex * 2);
+            }
+            titles[newIndex] = title;
+            titleIndicesByTitle.put(title, newIndex);
+            return newIndex;
+        }
+    }
+}
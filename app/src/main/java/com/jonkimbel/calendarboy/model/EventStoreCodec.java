@@ -0,0 +1,103 @@
+package com.jonkimbel.calendarboy.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Binary form of an {@link EventStore}: the distinct titles as length-prefixed UTF-8 followed by
+ * the time and title index columns, so decoding is a few bulk array copies.
+ */
+public final class EventStoreCodec {
+    private static final int MAGIC = 0x43424553;  // "CBES"
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private EventStoreCodec() {}
+
+    /** Returns {@code events} encoded into a new buffer, positioned at zero. */
+    public static ByteBuffer encode(EventStore events) {
+        byte[][] encodedTitles = new byte[events.getDistinctTitleCount()][];
+        int size = 4 * 4;  // Magic, version, title count, event count.
+        for (int i = 0; i < encodedTitles.length; i++) {
+            encodedTitles[i] = events.getDistinctTitle(i).getBytes(UTF_8);
+            size += 4 + encodedTitles[i].length;
+        }
+        size += events.size() * (8 + 8 + 4);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(encodedTitles.length).putInt(events.size());
+        for (byte[] title : encodedTitles) {
+            buffer.putInt(title.length).put(title);
+        }
+        for (int i = 0; i < events.size(); i++) {
+            buffer.putLong(events.getStartTimeMillis(i));
+        }
+        for (int i = 0; i < events.size(); i++) {
+            buffer.putLong(events.getEndTimeMillis(i));
+        }
+        for (int i = 0; i < events.size(); i++) {
+            buffer.putInt(events.getTitleIndex(i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a store written by {@link #encode}, reading from the buffer's position.
+     *
+     * @throws IOException if the data is truncated, from another version or otherwise invalid.
+     */
+    public static EventStore decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an event snapshot, or an old version");
+            }
+            int titleCount = buffer.getInt();
+            int eventCount = buffer.getInt();
+            // Check sizes against what's left before allocating, so a corrupt file can't ask for
+            // more memory than it could possibly fill.
+            if (titleCount < 0 || eventCount < 0
+                    || titleCount > buffer.remaining() / 4
+                    || (long) eventCount * (8 + 8 + 4) > buffer.remaining()) {
+                throw new IOException("Bad counts: " + titleCount + ", " + eventCount);
+            }
+
+            String[] titles = new String[titleCount];
+            for (int i = 0; i < titleCount; i++) {
+                int titleLength = buffer.getInt();
+                if (titleLength < 0 || titleLength > buffer.remaining()) {
+                    throw new IOException("Bad title length: " + titleLength);
+                }
+                byte[] title = new byte[titleLength];
+                buffer.get(title);
+                titles[i] = new String(title, UTF_8);
+            }
+            long[] startTimesMillis = new long[eventCount];
+            long[] endTimesMillis = new long[eventCount];
+            int[] titleIndices = new int[eventCount];
+            buffer.asLongBuffer().get(startTimesMillis);
+            buffer.position(buffer.position() + eventCount * 8);
+            buffer.asLongBuffer().get(endTimesMillis);
+            buffer.position(buffer.position() + eventCount * 8);
+            buffer.asIntBuffer().get(titleIndices);
+            buffer.position(buffer.position() + eventCount * 4);
+
+            for (int i = 0; i < eventCount; i++) {
+                if (titleIndices[i] < 0 || titleIndices[i] >= titleCount) {
+                    throw new IOException("Bad title index " + titleIndices[i]);
+                }
+                if (i > 0 && (startTimesMillis[i - 1] > startTimesMillis[i]
+                        || (startTimesMillis[i - 1] == startTimesMillis[i]
+                        && endTimesMillis[i - 1] > endTimesMillis[i]))) {
+                    throw new IOException("Events out of order at " + i);
+                }
+            }
+            return new EventStore(startTimesMillis, endTimesMillis, titleIndices, titles);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException and friends.
+            throw new IOException("Corrupt event snapshot", e);
+        }
+    }
+}
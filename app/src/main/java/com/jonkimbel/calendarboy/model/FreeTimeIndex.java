@@ -0,0 +1,126 @@
+package com.jonkimbel.calendarboy.model;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Answers "when is the next free block of at least this long, starting no earlier than this?"
+ * for an {@link EventStore} in O(log n). Built in one pass over the store: overlapping events are
+ * merged into busy intervals, and a segment tree over the gaps between them keeps the longest gap
+ * of each range, so the search can skip every range whose gaps are all too short.
+ *
+ * <p>Time before the first event and after the last one is free without limit.
+ */
+public final class FreeTimeIndex {
+    // Busy interval i is [busyStartsMillis[i], busyEndsMillis[i]); they're disjoint and sorted,
+    // and gap i is the free time between interval i and interval i + 1.
+    private final long[] busyStartsMillis;
+    private final long[] busyEndsMillis;
+    private final int busyCount;
+    private final int gapCount;
+    // Max-gap segment tree over the gaps: node 1 is the root, node n has children 2n and 2n + 1,
+    // and the leaves start at leafOffset.
+    private final long[] maxGapMillis;
+    private final int leafOffset;
+
+    public FreeTimeIndex(EventStore events) {
+        busyStartsMillis = new long[events.size()];
+        busyEndsMillis = new long[events.size()];
+        int count = 0;
+        for (int i = 0; i < events.size(); i++) {
+            long start = events.getStartTimeMillis(i);
+            long end = events.getEndTimeMillis(i);
+            if (end <= start) {
+                continue;  // Takes no time.
+            }
+            // Events are sorted by start, so each one either extends the last interval or
+            // starts a new one after it.
+            if (count > 0 && start <= busyEndsMillis[count - 1]) {
+                busyEndsMillis[count - 1] = Math.max(busyEndsMillis[count - 1], end);
+            } else {
+                busyStartsMillis[count] = start;
+                busyEndsMillis[count] = end;
+                count++;
+            }
+        }
+        busyCount = count;
+        gapCount = Math.max(0, count - 1);
+
+        int leaves = Integer.highestOneBit(Math.max(1, gapCount));
+        if (leaves < gapCount) {
+            leaves *= 2;
+        }
+        leafOffset = leaves;
+        maxGapMillis = new long[2 * leaves];
+        for (int i = 0; i < gapCount; i++) {
+            maxGapMillis[leafOffset + i] = busyStartsMillis[i + 1] - busyEndsMillis[i];
+        }
+        for (int node = leafOffset - 1; node >= 1; node--) {
+            maxGapMillis[node] = Math.max(maxGapMillis[2 * node], maxGapMillis[2 * node + 1]);
+        }
+    }
+
+    /** Number of busy intervals left after merging overlapping and touching events. */
+    public int getBusyIntervalCount() {
+        return busyCount;
+    }
+
+    /**
+     * Returns the earliest time at or after {@code notBeforeMillis} that starts a free block of
+     * at least {@code durationMillis}. There's always one, at the latest once every event has
+     * ended.
+     */
+    public long findFreeBlock(long notBeforeMillis, long durationMillis) {
+        Preconditions.checkArgument(durationMillis >= 0);
+        // The first busy interval that hasn't ended by notBeforeMillis.
+        int next = firstBusyIndexEndingAfter(notBeforeMillis);
+        if (next == busyCount) {
+            return notBeforeMillis;
+        }
+        if (busyStartsMillis[next] - notBeforeMillis >= durationMillis) {
+            // Already free, and for long enough.
+            return notBeforeMillis;
+        }
+        // Otherwise the block starts at the end of some busy interval from next on.
+        int gap = firstGapAtLeast(next, durationMillis);
+        return gap >= 0 ? busyEndsMillis[gap] : busyEndsMillis[busyCount - 1];
+    }
+
+    private int firstBusyIndexEndingAfter(long timeMillis) {
+        int low = 0;
+        int high = busyCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (busyEndsMillis[mid] > timeMillis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /** Returns the first gap from {@code fromGap} on lasting at least {@code minMillis}, or -1. */
+    private int firstGapAtLeast(int fromGap, long minMillis) {
+        if (fromGap >= gapCount) {
+            return -1;
+        }
+        return firstGapAtLeast(1, 0, leafOffset, fromGap, minMillis);
+    }
+
+    // Searches node, which covers gaps [nodeStart, nodeEnd). Only descends into subtrees that
+    // have a long enough gap, so it visits O(log n) nodes.
+    private int firstGapAtLeast(int node, int nodeStart, int nodeEnd, int fromGap,
+                                long minMillis) {
+        if (nodeEnd <= fromGap || maxGapMillis[node] < minMillis) {
+            return -1;
+        }
+        if (node >= leafOffset) {
+            return node - leafOffset < gapCount ? node - leafOffset : -1;
+        }
+        int mid = (nodeStart + nodeEnd) >>> 1;
+        int found = firstGapAtLeast(2 * node, nodeStart, mid, fromGap, minMillis);
+        return found >= 0
+                ? found
+                : firstGapAtLeast(2 * node + 1, mid, nodeEnd, fromGap, minMillis);
+    }
+}
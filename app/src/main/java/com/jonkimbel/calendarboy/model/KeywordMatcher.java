@@ -0,0 +1,190 @@
+package com.jonkimbel.calendarboy.model;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds which categories' keywords occur in a piece of text, in one pass over the text however
+ * many keywords there are (Aho-Corasick). Matching ignores case and only counts whole words, so
+ * "pr" matches "Review PR 12" but not "Sprint planning".
+ *
+ * <p>The automaton is built once into flat arrays, with each state's transitions a sorted run of
+ * characters found by binary search, so matching doesn't allocate.
+ */
+public final class KeywordMatcher {
+    /** Categories are reported as bits of an int. */
+    public static final int MAX_CATEGORIES = 32;
+
+    private static final int ROOT = 0;
+
+    // State s's transitions are edgeChars/edgeTargets[edgeStarts[s], edgeStarts[s + 1]).
+    private final int[] edgeStarts;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failureLinks;
+    // The next state along the failure chain (itself included) that ends a keyword, or -1.
+    private final int[] outputLinks;
+    // For states that end a keyword: its length and the categories it belongs to.
+    private final int[] keywordLengths;
+    private final int[] keywordCategories;
+
+    /**
+     * @param keywordsByCategory keywordsByCategory[c] are the keywords of category c. A keyword
+     *                           can be several words, e.g. "code review".
+     */
+    public KeywordMatcher(String[][] keywordsByCategory) {
+        Preconditions.checkArgument(keywordsByCategory.length <= MAX_CATEGORIES);
+
+        // Build the trie with one child list per state, then flatten it.
+        List<TrieNode> nodes = new ArrayList<>();
+        nodes.add(new TrieNode());
+        for (int category = 0; category < keywordsByCategory.length; category++) {
+            for (String keyword : keywordsByCategory[category]) {
+                Preconditions.checkArgument(!keyword.isEmpty());
+                int state = ROOT;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = Character.toLowerCase(keyword.charAt(i));
+                    int child = nodes.get(state).findChild(c);
+                    if (child < 0) {
+                        child = nodes.size();
+                        nodes.add(new TrieNode());
+                        nodes.get(state).addChild(c, child);
+                    }
+                    state = child;
+                }
+                nodes.get(state).keywordLength = keyword.length();
+                nodes.get(state).categories |= 1 << category;
+            }
+        }
+
+        int stateCount = nodes.size();
+        edgeStarts = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            edgeStarts[state + 1] = edgeStarts[state] + nodes.get(state).childCount;
+        }
+        edgeChars = new char[edgeStarts[stateCount]];
+        edgeTargets = new int[edgeStarts[stateCount]];
+        keywordLengths = new int[stateCount];
+        keywordCategories = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            TrieNode node = nodes.get(state);
+            node.sortChildren();
+            System.arraycopy(node.childChars, 0, edgeChars, edgeStarts[state], node.childCount);
+            System.arraycopy(node.children, 0, edgeTargets, edgeStarts[state], node.childCount);
+            keywordLengths[state] = node.keywordLength;
+            keywordCategories[state] = node.categories;
+        }
+
+        // Failure links, breadth first so a state's link is always computed before its children.
+        failureLinks = new int[stateCount];
+        outputLinks = new int[stateCount];
+        outputLinks[ROOT] = -1;
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int edge = edgeStarts[ROOT]; edge < edgeStarts[ROOT + 1]; edge++) {
+            int child = edgeTargets[edge];
+            failureLinks[child] = ROOT;
+            outputLinks[child] = keywordCategories[child] != 0 ? child : -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int edge = edgeStarts[state]; edge < edgeStarts[state + 1]; edge++) {
+                int child = edgeTargets[edge];
+                int failure = step(failureLinks[state], edgeChars[edge]);
+                failureLinks[child] = failure;
+                outputLinks[child] = keywordCategories[child] != 0 ? child : outputLinks[failure];
+                queue.add(child);
+            }
+        }
+    }
+
+    /** Returns the categories with at least one keyword in {@code text}, as a bit mask. */
+    public int match(String text) {
+        int categories = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            for (int output = outputLinks[state]; output >= 0;
+                 output = outputLinks[failureLinks[output]]) {
+                if ((categories & keywordCategories[output]) != keywordCategories[output]
+                        && isWholeWord(text, i + 1 - keywordLengths[output], i + 1)) {
+                    categories |= keywordCategories[output];
+                }
+            }
+        }
+        return categories;
+    }
+
+    /** Follows the goto function from {@code state}, falling back along failure links. */
+    private int step(int state, char c) {
+        while (true) {
+            int target = findEdge(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failureLinks[state];
+        }
+    }
+
+    private int findEdge(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars, edgeStarts[state], edgeStarts[state + 1], c);
+        return index >= 0 ? edgeTargets[index] : -1;
+    }
+
+    private static boolean isWholeWord(String text, int start, int end) {
+        return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+
+    /** A trie state while building. */
+    private static final class TrieNode {
+        char[] childChars = new char[2];
+        int[] children = new int[2];
+        int childCount = 0;
+        int keywordLength = 0;
+        int categories = 0;
+
+        int findChild(char c) {
+            for (int i = 0; i < childCount; i++) {
+                if (childChars[i] == c) {
+                    return children[i];
+                }
+            }
+            return -1;
+        }
+
+        void addChild(char c, int child) {
+            if (childCount == childChars.length) {
+                childChars = Arrays.copyOf(childChars, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            childChars[childCount] = c;
+            children[childCount] = child;
+            childCount++;
+        }
+
+        // Insertion sort; states rarely have more than a handful of children.
+        void sortChildren() {
+            for (int i = 1; i < childCount; i++) {
+                char c = childChars[i];
+                int child = children[i];
+                int j = i - 1;
+                while (j >= 0 && childChars[j] > c) {
+                    childChars[j + 1] = childChars[j];
+                    children[j + 1] = children[j];
+                    j--;
+                }
+                childChars[j + 1] = c;
+                children[j + 1] = child;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.jonkimbel.calendarboy.view;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
@@ -8,30 +9,39 @@ import android.graphics.DashPathEffect;
 import android.graphics.Paint;
 import android.graphics.RectF;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.util.TypedValue;
+import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.OverScroller;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.jonkimbel.calendarboy.R;
-import com.jonkimbel.calendarboy.model.Event;
-
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.jonkimbel.calendarboy.concurrent.LayoutExecutor;
+import com.jonkimbel.calendarboy.concurrent.UiThreadExecutor;
+import com.jonkimbel.calendarboy.layout.DayLayout;
+import com.jonkimbel.calendarboy.layout.LayoutGeometry;
+import com.jonkimbel.calendarboy.layout.Viewport;
+import com.jonkimbel.calendarboy.logging.Logs;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.Nullable;
+import androidx.core.os.TraceCompat;
 import androidx.core.util.Preconditions;
 
 public class CalendarView extends View {
+    private static final String TAG = "CalendarView";
+    private static final long MIN_VISIBLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long ZOOM_ANIMATION_MILLIS = 300;
+
     // Attributes defined via XML.
     private final Paint backgroundColor;
     private final Paint backgroundStroke;
@@ -58,20 +68,38 @@ public class CalendarView extends View {
     private float textSizePx;
 
     // Data.
-    private List<Event> data = new ArrayList<>();
+    private EventStore data = EventStore.EMPTY;
     private Long zoomStartTimeMillis = null;
     private Long zoomEndTimeMillis = null;
 
-    // Calculated layout.
+    // Calculated layout. Computed on layoutExecutor into a fresh LayoutSnapshot, which replaces
+    // the one being drawn once it's ready. A newer request cancels any pending one.
     private RectF containerRect;
-    private List<DrawableEvent> drawableEvents = new ArrayList<>();
-    private List<Float> dividerLineYPositions = new ArrayList<>();
-    private List<Float> highlightLineYPositions = new ArrayList<>();
+    private Viewport viewport;
+    private Executor layoutExecutor = LayoutExecutor.INSTANCE;
+    private LayoutSnapshot layout = LayoutSnapshot.EMPTY;
+    private ListenableFutureTask<LayoutSnapshot> pendingLayout;
+    @Nullable
+    private MetricsListener metricsListener;
+
+    // Drawing.
+    private final RectF eventRect = new RectF();
+    private final ChromeCache chrome = new ChromeCache();
+
+    // What part of the day is on screen. Zooms, pans and pinches only move this; the layout
+    // underneath stays as it is. Until the user or zoomTo() moves it, it follows the data.
+    private final VisibleWindow window = new VisibleWindow(MIN_VISIBLE_MILLIS);
+    private boolean windowFollowsData = true;
+    private final ValueAnimator zoomAnimator = ValueAnimator.ofFloat(0, 1);
+    private double zoomFromStartMillis;
+    private double zoomFromEndMillis;
+    private double zoomToStartMillis;
+    private double zoomToEndMillis;
 
     // Input.
-    private boolean hasBeenTouched = false;
-    private float previousTouchX = -1;
-    private float previousTouchY = -1;
+    private final GestureDetector gestureDetector;
+    private final ScaleGestureDetector scaleGestureDetector;
+    private final OverScroller scroller;
 
     public CalendarView(Context context, @Nullable AttributeSet untypedAttrs) {
         super(context, untypedAttrs);
@@ -165,6 +193,20 @@ public class CalendarView extends View {
         } finally {
             attrs.recycle();
         }
+
+        gestureDetector = new GestureDetector(context, new GestureListener());
+        scaleGestureDetector = new ScaleGestureDetector(context, new ScaleListener());
+        scroller = new OverScroller(context);
+
+        zoomAnimator.setDuration(ZOOM_ANIMATION_MILLIS);
+        zoomAnimator.setInterpolator(new DecelerateInterpolator());
+        zoomAnimator.addUpdateListener(animator -> {
+            float fraction = animator.getAnimatedFraction();
+            window.set(
+                    zoomFromStartMillis + (zoomToStartMillis - zoomFromStartMillis) * fraction,
+                    zoomFromEndMillis + (zoomToEndMillis - zoomFromEndMillis) * fraction);
+            invalidate();
+        });
     }
 
     @Override
@@ -175,79 +217,107 @@ public class CalendarView extends View {
         containerRect = new RectF(
                 getPaddingLeft(), getPaddingTop(),
                 right, bottom);
+        updateViewport();
 
         dividerStroke.setPathEffect(new DashPathEffect(
                 new float[]{dividerDashOnDistancePx, dividerDashOffDistancePx},
                 calculateDashPhase()));
+        chrome.invalidate();
 
         // TODO: recalculate phase for highlight stroke.
 
-        updateContentLayout();
+        scheduleContentLayout();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
-        canvas.drawRoundRect(
-                containerRect, backgroundRadiusPx, backgroundRadiusPx, backgroundColor);
-        for (Float dividerLineYPosition : dividerLineYPositions) {
-            canvas.drawLine(containerRect.left, dividerLineYPosition,
-                    containerRect.right, dividerLineYPosition,
+        TraceCompat.beginSection("CalendarView#draw");
+        long drawStartNanos = metricsListener != null ? System.nanoTime() : 0;
+        try {
+            drawContent(canvas);
+        } finally {
+            TraceCompat.endSection();
+        }
+        if (metricsListener != null) {
+            metricsListener.onDraw(System.nanoTime() - drawStartNanos);
+        }
+    }
+
+    private void drawContent(Canvas canvas) {
+        LayoutSnapshot layout = this.layout;
+        LayoutGeometry geometry = layout.geometry;
+        window.bind(geometry);
+        if (!chrome.isValid()) {
+            chrome.rebuild(containerRect, backgroundRadiusPx, backgroundColor, backgroundStroke,
                     dividerStroke);
         }
-        canvas.drawRoundRect(containerRect, backgroundRadiusPx, backgroundRadiusPx,
-                backgroundStroke);
-        for (DrawableEvent drawableEvent : drawableEvents) {
-            Log.d("CalendarView", String.format("drawing rect: %f, %f, %f, %f",
-                    drawableEvent.rect.top,
-                    drawableEvent.rect.left,
-                    drawableEvent.rect.bottom,
-                    drawableEvent.rect.right));
-            canvas.drawRoundRect(drawableEvent.rect, contentRadiusPx, contentRadiusPx,
-                    contentColor);
-            canvas.drawRoundRect(drawableEvent.rect, contentRadiusPx, contentRadiusPx,
-                    contentStroke);
+        chrome.drawBackground(canvas);
+        for (int i = 0; i < geometry.getDividerCount(); i++) {
+            float dividerY = window.toScreenY(geometry.getDividerY(i));
+            if (dividerY > containerRect.top && dividerY < containerRect.bottom) {
+                chrome.drawDivider(canvas, dividerY);
+            }
+        }
+
+        // The geometry covers the whole day. Skip the events that are entirely off screen and
+        // clip the ones that are partly on it. The geometry is in content space, so the
+        // container is mapped back through the visible window to search it.
+        canvas.save();
+        canvas.clipRect(containerRect);
+        float visibleTop = window.toContentY(containerRect.top);
+        int firstVisible = geometry.getFirstIndexEndingBelow(visibleTop);
+        int endVisible = geometry.getFirstIndexStartingAtOrBelow(
+                window.toContentY(containerRect.bottom));
+        for (int i = firstVisible; i < endVisible; i++) {
+            if (geometry.getBottom(i) <= visibleTop) {
+                continue;
+            }
+            eventRect.set(geometry.getLeft(i), window.toScreenY(geometry.getTop(i)),
+                    geometry.getRight(i), window.toScreenY(geometry.getBottom(i)));
+            canvas.drawRoundRect(eventRect, contentRadiusPx, contentRadiusPx, contentColor);
+            canvas.drawRoundRect(eventRect, contentRadiusPx, contentRadiusPx, contentStroke);
 
             // TODO: fix this for RTL.
-            // TODO: do this in the layout step, not the draw step.
-            for (TextBreakPoint breakPoint :
-                    breakTextMultiline(drawableEvent.data.getTitle(), drawableEvent.rect,
-                            textColor, contentPaddingPx)) {
-                canvas.drawText(breakPoint.textLine, 0, breakPoint.textLine.length(),
-                        breakPoint.xPosition, breakPoint.yPosition, textColor);
+            EventTextLayout textLayout = layout.textLayouts[i];
+            int visibleLineCount = textLayout.getVisibleLineCount(
+                    eventRect.height(), contentPaddingPx);
+            float xPosition = eventRect.left + contentPaddingPx;
+            float yPosition = eventRect.top + contentPaddingPx + textSizePx;
+            for (int line = 0; line < visibleLineCount; line++) {
+                canvas.drawText(textLayout.getText(),
+                        textLayout.getLineStart(line), textLayout.getLineEnd(line),
+                        xPosition, yPosition, textColor);
+                yPosition += textSizePx;
             }
         }
 
-        for (Float highlightLineYPosition : highlightLineYPositions) {
-            canvas.drawLine(containerRect.left, highlightLineYPosition,
-                    containerRect.right, highlightLineYPosition,
-                    highlightStroke);
+        canvas.restore();
+
+        if (zoomStartTimeMillis != null && zoomEndTimeMillis != null) {
+            drawHighlightLine(canvas, window.timeToScreenY(zoomStartTimeMillis));
+            drawHighlightLine(canvas, window.timeToScreenY(zoomEndTimeMillis));
+        }
+    }
+
+    private void drawHighlightLine(Canvas canvas, float y) {
+        if (y >= containerRect.top && y <= containerRect.bottom) {
+            canvas.drawLine(containerRect.left, y, containerRect.right, y, highlightStroke);
         }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        // Consider using GestureDetectors for flinging, tapping, zooming support.
-        // See https://developer.android.com/training/custom-views/making-interactive#motion
-
-        // Consider using Animators for smooth animation.
-        // https://developer.android.com/training/custom-views/making-interactive#makesmooth
-        if (event.getAction() == MotionEvent.ACTION_MOVE) {
-            float dX = 0, dY = 0;
-            if (hasBeenTouched) {
-                dX = event.getX() - previousTouchX;
-                dY = event.getY() - previousTouchY;
-            }
-            previousTouchX = event.getX();
-            previousTouchY = event.getY();
-            hasBeenTouched = true;
-
-            // TODO: do something with touch events.
+        boolean handled = scaleGestureDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
 
-            invalidate();
-            requestLayout();
+    @Override
+    public void computeScroll() {
+        if (scroller.computeScrollOffset()) {
+            window.setScrollPx(scroller.getCurrY());
+            postInvalidateOnAnimation();
         }
-
-        return true;
     }
 
     // Consider implementing onMeasure:
@@ -255,35 +325,84 @@ public class CalendarView extends View {
 
     public void setBackgroundColor(@ColorInt int backgroundColor) {
         this.backgroundColor.setColor(backgroundColor);
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
 
-    public void setData(List<Event> data) {
+    public void setData(EventStore data) {
         this.data = data;
-        updateContentLayout();
-        invalidate();
-        requestLayout();
+        scheduleContentLayout();
     }
 
+    /**
+     * Animates to show [startTimeMillis, endTimeMillis) with some room around it, and highlights
+     * its bounds. Only the visible window moves; the layout isn't recomputed.
+     */
     public void zoomTo(long startTimeMillis, long endTimeMillis) {
         this.zoomStartTimeMillis = startTimeMillis;
         this.zoomEndTimeMillis = endTimeMillis;
-        updateContentLayout();
-        invalidate();
-        requestLayout();
+        windowFollowsData = false;
+        long amountToPadZoomTimes = (endTimeMillis - startTimeMillis) / 4;
+        // No narrower than pinching allows, so a zero-length event still leaves a window to show.
+        double centerMillis = (startTimeMillis + (double) endTimeMillis) / 2;
+        double halfSpanMillis = Math.max(MIN_VISIBLE_MILLIS,
+                endTimeMillis - startTimeMillis + 2 * amountToPadZoomTimes) / 2.0;
+        animateWindowTo(centerMillis - halfSpanMillis, centerMillis + halfSpanMillis);
     }
 
+    /** Animates back to showing all of the data. */
     public void clearZoom() {
         this.zoomStartTimeMillis = null;
         this.zoomEndTimeMillis = null;
-        updateContentLayout();
-        invalidate();
-        requestLayout();
+        windowFollowsData = true;
+        if (layout.dayLayout != null) {
+            animateWindowTo(getDataStartTimeMillis(layout.dayLayout),
+                    getDataEndTimeMillis(layout.dayLayout));
+        } else {
+            invalidate();
+        }
+    }
+
+    private void animateWindowTo(double startMillis, double endMillis) {
+        scroller.forceFinished(true);
+        zoomAnimator.cancel();
+        if (!window.hasLimits()) {
+            // Nothing's been laid out yet, so there's nothing to animate from.
+            window.set(startMillis, endMillis);
+            invalidate();
+            return;
+        }
+        zoomFromStartMillis = window.getStartMillis();
+        zoomFromEndMillis = window.getEndMillis();
+        // Let the window clamp the target, so the animation doesn't run into the limits.
+        window.set(startMillis, endMillis);
+        zoomToStartMillis = window.getStartMillis();
+        zoomToEndMillis = window.getEndMillis();
+        window.set(zoomFromStartMillis, zoomFromEndMillis);
+        zoomAnimator.start();
+    }
+
+    /**
+     * Reports layout and draw timings to {@code metricsListener} on the UI thread, or stops if
+     * it's null. Layouts that get superseded before they're shown aren't reported.
+     */
+    public void setMetricsListener(@Nullable MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Sets where layout is computed. Defaults to a shared background thread; pass {@link
+     * com.google.common.util.concurrent.MoreExecutors#directExecutor()} to compute it on the UI
+     * thread instead. Either way the result is swapped in from a posted UI thread task.
+     */
+    public void setLayoutExecutor(Executor layoutExecutor) {
+        this.layoutExecutor = layoutExecutor;
     }
 
     public void setDividerStroke(@ColorInt int dividerStroke) {
         this.dividerStroke.setColor(dividerStroke);
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
@@ -292,6 +411,7 @@ public class CalendarView extends View {
         this.dividerStrokeWidthPx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                 dividerStrokeWidthDp, getResources().getDisplayMetrics());
         dividerStroke.setStrokeWidth(dividerStrokeWidthPx);
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
@@ -302,6 +422,7 @@ public class CalendarView extends View {
         dividerStroke.setPathEffect(new DashPathEffect(
                 new float[]{dividerDashOnDistancePx, dividerDashOffDistancePx},
                 calculateDashPhase()));
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
@@ -312,6 +433,7 @@ public class CalendarView extends View {
         dividerStroke.setPathEffect(new DashPathEffect(
                 new float[]{dividerDashOnDistancePx, dividerDashOffDistancePx},
                 calculateDashPhase()));
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
@@ -359,6 +481,7 @@ public class CalendarView extends View {
     public void setBackgroundRadiusDp(float backgroundRadiusDp) {
         this.backgroundRadiusPx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                 backgroundRadiusDp, getResources().getDisplayMetrics());
+        chrome.invalidate();
         invalidate();
         requestLayout();
     }
@@ -373,6 +496,8 @@ public class CalendarView extends View {
     public void setContentPaddingDp(float contentPaddingDp) {
         this.contentPaddingPx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                 contentPaddingDp, getResources().getDisplayMetrics());
+        updateViewport();
+        scheduleContentLayout();
         invalidate();
         requestLayout();
     }
@@ -387,6 +512,7 @@ public class CalendarView extends View {
         this.textSizePx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
                 textSizeSp, getResources().getDisplayMetrics());
         textColor.setTextSize(textSizePx);
+        scheduleContentLayout();
         invalidate();
         requestLayout();
     }
@@ -397,246 +523,147 @@ public class CalendarView extends View {
         return containerRect.width() % (dividerDashOnDistancePx + dividerDashOffDistancePx) / 2;
     }
 
-    private static List<TextBreakPoint> breakTextMultiline(
-            String text, RectF container, Paint textPaint, float textPaddingPx) {
-        com.google.common.base.Preconditions.checkArgument(
-                textPaint.getTextAlign() == Paint.Align.LEFT);
-        List<TextBreakPoint> breakPoints = new ArrayList<>();
-        StringBuilder textBuilder = new StringBuilder(text);
-
-        final float availableWidth = container.width() - 2 * textPaddingPx;
-        float currentYPositionInRect = container.top + textPaddingPx + textPaint.getTextSize();
-        while (textBuilder.length() > 0
-                && currentYPositionInRect < container.bottom - textPaddingPx) {
-            int textIndex = textPaint.breakText(textBuilder.toString(), 0, textBuilder.length(),
-                    true, availableWidth, null);
-            breakPoints.add(new TextBreakPoint(textBuilder.substring(0, textIndex),
-                    container.left + textPaddingPx, currentYPositionInRect));
-            textBuilder.delete(0, textIndex);
-            currentYPositionInRect += textPaint.getTextSize();
-        }
-
-        return breakPoints;
+    private void updateViewport() {
+        viewport = new Viewport(containerRect.left, containerRect.top,
+                containerRect.width(), containerRect.height(), contentPaddingPx);
+        window.setBand(containerRect.top + contentPaddingPx,
+                containerRect.bottom - contentPaddingPx);
     }
 
-    private void updateContentLayout() {
-        ZonedDateTime now = ZonedDateTime.ofInstant(Instant.now(), ZoneId.systemDefault());
-        ZonedDateTime todayStart = now.toLocalDate().atStartOfDay(ZoneId.systemDefault());
-        ZonedDateTime todayEnd = todayStart.plusDays(1).minusNanos(1000);
-
-        long minTimeToDisplay = todayStart.toEpochSecond() * 1000;
-        long maxTimeToDisplay = todayEnd.toEpochSecond() * 1000;
-
-        if (zoomStartTimeMillis != null && zoomEndTimeMillis != null) {
-            long amountToPadZoomTimes = (zoomEndTimeMillis - zoomStartTimeMillis) / 4;
-            minTimeToDisplay = Math.max(minTimeToDisplay,
-                    zoomStartTimeMillis - amountToPadZoomTimes);
-            maxTimeToDisplay = Math.min(maxTimeToDisplay,
-                    zoomEndTimeMillis + amountToPadZoomTimes);
+    /**
+     * Lays out the current data and size on the layout executor, then swaps the result in on the
+     * UI thread. Any layout still pending is stale, so it's cancelled.
+     */
+    private void scheduleContentLayout() {
+        if (viewport == null) {
+            // onSizeChanged() will get here once there's somewhere to lay out into.
+            return;
         }
-        Log.d("CalendarView", String.format("minTimeToDisplay: %s, maxTimeToDisplay: %s",
-                minTimeToDisplay, maxTimeToDisplay));
-
-        List<DrawableEvent> newDrawableEvents = new ArrayList<>();
-        List<Float> newDividerLineYPositions = new ArrayList<>();
-        List<Float> newHighlightLineYPositions = new ArrayList<>();
-        if (data.size() > 0) {
-            long minTimeMillis = Math.max(data.get(0).getStartTimeMillis(), minTimeToDisplay);
-            long maxTimeMillis = Math.min(data.get(0).getEndTimeMillis(), maxTimeToDisplay);
-            List<IntermediateRep> intermediateReps = new ArrayList<>();
-
-            // Figure out start of first event and end of last event.
-            // Also, transform the data into a different format (IntermediateRep) to make it easier
-            // to figure out how many columns to render.
-            {
-                for (Event entry : data) {
-                    if (entry.getEndTimeMillis() <= minTimeToDisplay ||
-                            entry.getStartTimeMillis() >= maxTimeToDisplay) {
-                        continue;
-                    }
-
-                    long cappedStartTime = entry.getStartTimeMillis() < minTimeToDisplay ?
-                            minTimeToDisplay : entry.getStartTimeMillis();
-                    long cappedEndTime = entry.getEndTimeMillis() > maxTimeToDisplay ?
-                            maxTimeToDisplay : entry.getEndTimeMillis();
-                    if (cappedStartTime < minTimeMillis) {
-                        minTimeMillis = cappedStartTime;
-                    }
-                    if (cappedEndTime > maxTimeMillis) {
-                        maxTimeMillis = cappedEndTime;
-                    }
-                    Log.d("CalendarView",
-                            String.format("title: %s, cappedStartTime: %s, cappedEndTime: %s",
-                            entry.getTitle(), cappedStartTime, cappedEndTime));
-                    intermediateReps.add(new IntermediateRep(true, cappedStartTime, entry));
-                    intermediateReps.add(new IntermediateRep(false, cappedEndTime, entry));
-                }
-                Preconditions.checkState(maxTimeMillis > minTimeMillis);
-                Preconditions.checkState(intermediateReps.size() % 2 == 0);
-            }
-
-            long timeAtTopOfContainer = minTimeMillis;
-            long timeAtBottomOfContainer = maxTimeMillis;
+        Preconditions.checkState(textColor.getTextAlign() == Paint.Align.LEFT);
 
-            if (zoomStartTimeMillis != null && zoomEndTimeMillis != null) {
-                timeAtTopOfContainer = minTimeToDisplay;
-                timeAtBottomOfContainer = maxTimeToDisplay;
-            }
-
-            List<FinalRep> finalRepresentations = new ArrayList<>();
-            int columnsToRender = 0;
-
-            // Figure out how many columns to render.
-            {
-                Collections.sort(intermediateReps, IntermediateRep::compare);
-                Preconditions.checkState(intermediateReps.size() % 2 == 0);
-                int currentSimultaneousColumns = 0;
-                Map<Event, FinalRep> currentEvents = new HashMap<>();
-                Log.d("CalendarView", "WOAHWOAHWOAH");
-                for (IntermediateRep entry : intermediateReps) {
-                    if (entry.increased) {
-                        currentSimultaneousColumns++;
-
-                        FinalRep finalRep = new FinalRep(
-                                entry.data, currentSimultaneousColumns - 1);
-                        finalRepresentations.add(finalRep);
-                        Log.d("CalendarView", String.format("put: %s", entry.data.getTitle()));
-                        currentEvents.put(entry.data, finalRep);
-                        if (currentSimultaneousColumns > columnsToRender) {
-                            columnsToRender = currentSimultaneousColumns;
-                        }
-
-                        for (FinalRep event : currentEvents.values()) {
-                            if (event.numColumns < currentSimultaneousColumns) {
-                                event.numColumns = currentSimultaneousColumns;
-                            }
-                        }
-                    } else {
-                        Log.d("CalendarView", String.format("remove: %s", entry.data.getTitle()));
-                        currentEvents.remove(entry.data);
-                        currentSimultaneousColumns--;
-                    }
-                }
-                Preconditions.checkState(currentSimultaneousColumns == 0);
-                Preconditions.checkState(columnsToRender > 0);
-                Preconditions.checkState(currentEvents.size() == 0);
-            }
-
-            float pxHeightPerMillisecond =
-                    (containerRect.height() - 2 * contentPaddingPx)
-                            / (timeAtBottomOfContainer - timeAtTopOfContainer);
-            float[] pxWidthPerNumOtherColumns = new float[columnsToRender];
-            for (int i = 0; i < columnsToRender; i++) {
-                pxWidthPerNumOtherColumns[i] =
-                        (containerRect.width() - 2 * contentPaddingPx - i * contentPaddingPx)
-                                / (i + 1);
-            }
-
-            for (FinalRep finalRep : finalRepresentations) {
-                float left = containerRect.left + contentPaddingPx +
-                        (pxWidthPerNumOtherColumns[finalRep.numColumns - 1] + contentPaddingPx) *
-                                finalRep.columnPosition;
-                float top = containerRect.top + contentPaddingPx +
-                        pxHeightPerMillisecond * (finalRep.data.getStartTimeMillis() - timeAtTopOfContainer);
-                float right = left + pxWidthPerNumOtherColumns[finalRep.numColumns - 1];
-                float bottom = top +
-                        pxHeightPerMillisecond *
-                                (finalRep.data.getEndTimeMillis() - finalRep.data.getStartTimeMillis());
-                newDrawableEvents.add(new DrawableEvent(new RectF(left, top, right, bottom),
-                        finalRep.data));
-            }
-
-            ZonedDateTime firstDividerTime =
-                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(timeAtTopOfContainer),
-                            ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS).plusHours(1);
-            ZonedDateTime lastDividerTime =
-                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(timeAtBottomOfContainer),
-                            ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS);
-
-            for (long seconds = firstDividerTime.toEpochSecond();
-                 seconds < lastDividerTime.toEpochSecond();
-                 seconds += TimeUnit.HOURS.toSeconds(1)) {
-                float yPosition = containerRect.top + contentPaddingPx +
-                        pxHeightPerMillisecond * (TimeUnit.SECONDS.toMillis(seconds) - timeAtTopOfContainer);
-                newDividerLineYPositions.add(yPosition);
+        if (pendingLayout != null) {
+            pendingLayout.cancel(false);
+        }
+        LayoutSnapshot previous = layout;
+        LayoutSnapshot.Request request = new LayoutSnapshot.Request(
+                data, viewport, new Paint(textColor));
+        // Written on the layout thread; completing the task publishes it to the UI thread.
+        long[] layoutDurationNanos = new long[1];
+        ListenableFutureTask<LayoutSnapshot> task = ListenableFutureTask.create(() -> {
+            TraceCompat.beginSection("CalendarView#layout");
+            long startNanos = System.nanoTime();
+            try {
+                return LayoutSnapshot.compute(request, previous);
+            } finally {
+                layoutDurationNanos[0] = System.nanoTime() - startNanos;
+                TraceCompat.endSection();
             }
+        });
+        pendingLayout = task;
+        task.addListener(() -> onContentLayoutDone(task, layoutDurationNanos[0]),
+                UiThreadExecutor.INSTANCE);
+        layoutExecutor.execute(task);
+    }
 
-            if (zoomStartTimeMillis != null && zoomEndTimeMillis != null) {
-                float topHighlightYPosition = containerRect.top + contentPaddingPx +
-                        pxHeightPerMillisecond * (zoomStartTimeMillis - timeAtTopOfContainer);
-                newHighlightLineYPositions.add(topHighlightYPosition);
-
-                float bottomHighlightYPosition = containerRect.top + contentPaddingPx +
-                        pxHeightPerMillisecond * (zoomEndTimeMillis - timeAtTopOfContainer);
-                newHighlightLineYPositions.add(bottomHighlightYPosition);
+    private void onContentLayoutDone(ListenableFutureTask<LayoutSnapshot> task,
+                                     long durationNanos) {
+        if (task != pendingLayout || task.isCancelled()) {
+            return;
+        }
+        pendingLayout = null;
+        try {
+            layout = Futures.getDone(task);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Calendar layout failed", e.getCause());
+        }
+        DayLayout dayLayout = layout.dayLayout;
+        if (dayLayout != null) {
+            window.setLimits(dayLayout.getDayStartTimeMillis(), dayLayout.getDayEndTimeMillis());
+            boolean windowIsEmpty = window.getEndMillis() <= window.getStartMillis();
+            if ((windowFollowsData && !zoomAnimator.isRunning()) || windowIsEmpty) {
+                window.set(getDataStartTimeMillis(dayLayout), getDataEndTimeMillis(dayLayout));
             }
         }
-        Log.d("CalendarView", Integer.toString(newDrawableEvents.size()));
-        this.drawableEvents = newDrawableEvents;
-        this.dividerLineYPositions = newDividerLineYPositions;
-        this.highlightLineYPositions = newHighlightLineYPositions;
+        int columnCount = dayLayout == null ? 0 : dayLayout.getMaxColumnCount();
+        if (Logs.VERBOSE) {
+            Logs.v(TAG, "Laid out " + layout.geometry.getEventCount() + " events in "
+                    + columnCount + " columns");
+        }
+        if (metricsListener != null) {
+            metricsListener.onLayout(durationNanos, layout.geometry.getEventCount(), columnCount);
+        }
+        invalidate();
     }
 
-    private static class TextBreakPoint {
-        final String textLine;
-        final float xPosition;
-        final float yPosition;
+    // An empty day shows all of it.
+    private static long getDataStartTimeMillis(DayLayout dayLayout) {
+        return dayLayout.size() > 0
+                ? dayLayout.getDataStartTimeMillis()
+                : dayLayout.getDayStartTimeMillis();
+    }
 
-        TextBreakPoint(String textLine, float xPosition, float yPosition) {
-            this.textLine = textLine;
-            this.xPosition = xPosition;
-            this.yPosition = yPosition;
-        }
+    private static long getDataEndTimeMillis(DayLayout dayLayout) {
+        return dayLayout.size() > 0
+                ? dayLayout.getDataEndTimeMillis()
+                : dayLayout.getDayEndTimeMillis();
     }
 
-    private static class IntermediateRep {
-        public final boolean increased;
-        public final long time;
-        public final Event data;
+    private final class GestureListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(MotionEvent event) {
+            // Touching the screen stops a fling or zoom animation where it is.
+            scroller.forceFinished(true);
+            zoomAnimator.cancel();
+            return window.hasLimits();
+        }
 
-        IntermediateRep(boolean increased, long time, Event data) {
-            this.increased = increased;
-            this.time = time;
-            this.data = data;
+        @Override
+        public boolean onScroll(MotionEvent down, MotionEvent move, float distanceX,
+                                float distanceY) {
+            windowFollowsData = false;
+            window.scrollByPx(distanceY);
+            postInvalidateOnAnimation();
+            return true;
         }
 
-        public static int compare(IntermediateRep lh, IntermediateRep rh) {
-            if (lh.time < rh.time) {
-                return -1;
-            }
-            if (lh.time > rh.time) {
-                return 1;
-            }
-            // Time is equal.
-            if (lh.increased == rh.increased) {
-                return 0;
-            }
-            // Time is equal and one increases, the other decreases. Put the decrease first.
-            if (lh.increased) {
-                return 1;
-            }
-            return -1;
+        @Override
+        public boolean onFling(MotionEvent down, MotionEvent up, float velocityX,
+                               float velocityY) {
+            scroller.fling(0, window.getScrollPx(), 0, (int) -velocityY,
+                    0, 0, 0, window.getMaxScrollPx());
+            postInvalidateOnAnimation();
+            return true;
         }
     }
 
-    private static class FinalRep {
-        public int numColumns = 1;
-        public final int columnPosition;
-        public final Event data;
+    private final class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            zoomAnimator.cancel();
+            return window.hasLimits();
+        }
 
-        FinalRep(Event data, int columnPosition) {
-            this.data = data;
-            this.columnPosition = columnPosition;
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            windowFollowsData = false;
+            window.scaleBy(detector.getScaleFactor(), detector.getFocusY());
+            postInvalidateOnAnimation();
+            return true;
         }
     }
 
-    private static class DrawableEvent {
-        final RectF rect;
-        final Event data;
-
-        DrawableEvent(RectF rect, Event event) {
-            this.rect = rect;
-            this.data = event;
-        }
+    /** Timings from {@link CalendarView}, all delivered on the UI thread. */
+    public interface MetricsListener {
+        /**
+         * A layout was computed and swapped in.
+         *
+         * @param durationNanos time spent computing it on the layout executor.
+         * @param eventCount    events laid out.
+         * @param columnCount   the most columns any event was split into.
+         */
+        void onLayout(long durationNanos, int eventCount, int columnCount);
+
+        /** A frame was drawn; {@code durationNanos} covers recording the draw commands. */
+        void onDraw(long durationNanos);
     }
 }
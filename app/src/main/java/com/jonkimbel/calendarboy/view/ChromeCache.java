@@ -0,0 +1,100 @@
+package com.jonkimbel.calendarboy.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The parts of {@link CalendarView} that only change with its size or style, rendered once into
+ * bitmaps: the rounded background with its outline, and a single dashed hour divider. Dividers
+ * move with every pan and zoom, so it's their image that's kept rather than their positions; each
+ * frame copies it to each divider's y instead of running the dash path effect again.
+ *
+ * <p>Call {@link #invalidate} whenever the size or one of the paints changes, then {@link
+ * #rebuild} before the next draw.
+ */
+final class ChromeCache {
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private boolean valid = false;
+
+    @Nullable
+    private Bitmap background;
+    private float backgroundLeft;
+    private float backgroundTop;
+
+    @Nullable
+    private Bitmap divider;
+    private float dividerLeft;
+    private float dividerHalfHeight;
+
+    void invalidate() {
+        valid = false;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Renders the chrome for a container. Dividers are kept clear of the outline, which used to
+     * be drawn over their ends.
+     */
+    void rebuild(RectF containerRect, float radiusPx, Paint backgroundFill,
+                 Paint backgroundStroke, Paint dividerStroke) {
+        // Strokes straddle the edge, so leave room for the outer half of the outline.
+        float outlineWidth = Math.max(1, backgroundStroke.getStrokeWidth());
+        backgroundLeft = (float) Math.floor(containerRect.left - outlineWidth);
+        backgroundTop = (float) Math.floor(containerRect.top - outlineWidth);
+        background = obtain(background,
+                (int) Math.ceil(containerRect.right + outlineWidth - backgroundLeft),
+                (int) Math.ceil(containerRect.bottom + outlineWidth - backgroundTop));
+        Canvas canvas = new Canvas(background);
+        canvas.translate(-backgroundLeft, -backgroundTop);
+        canvas.drawRoundRect(containerRect, radiusPx, radiusPx, backgroundFill);
+        canvas.drawRoundRect(containerRect, radiusPx, radiusPx, backgroundStroke);
+
+        float inset = outlineWidth / 2;
+        float dividerWidth = Math.max(1, dividerStroke.getStrokeWidth());
+        dividerLeft = Math.round(containerRect.left + inset);
+        dividerHalfHeight = (float) Math.ceil(dividerWidth / 2) + 1;
+        divider = obtain(divider,
+                Math.max(1, (int) Math.ceil(containerRect.width() - 2 * inset)),
+                (int) (2 * dividerHalfHeight));
+        canvas = new Canvas(divider);
+        // Start the line where it used to start, so the dashes stay where they were.
+        canvas.drawLine(-inset, dividerHalfHeight, containerRect.width() - inset,
+                dividerHalfHeight, dividerStroke);
+
+        valid = true;
+    }
+
+    void drawBackground(Canvas canvas) {
+        if (background != null) {
+            canvas.drawBitmap(background, backgroundLeft, backgroundTop, bitmapPaint);
+        }
+    }
+
+    void drawDivider(Canvas canvas, float y) {
+        if (divider != null) {
+            // On a whole pixel, so filtering doesn't blur the dashes.
+            canvas.drawBitmap(divider, dividerLeft, Math.round(y - dividerHalfHeight),
+                    bitmapPaint);
+        }
+    }
+
+    /**
+     * Returns {@code previous} cleared if it's the right size, or a new bitmap otherwise. The old
+     * one isn't recycled, since a frame that's already been recorded may still draw it.
+     */
+    private static Bitmap obtain(@Nullable Bitmap previous, int width, int height) {
+        if (previous != null && previous.getWidth() == width && previous.getHeight() == height) {
+            previous.eraseColor(Color.TRANSPARENT);
+            return previous;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jonkimbel.calendarboy.view;
+
+/**
+ * Line breaks for a single event title. Computed in the layout step and reused by every draw
+ * until the title, the available width or the text size changes, so drawing only reads ints.
+ */
+final class EventTextLayout {
+    private String text;
+    private float availableWidthPx = Float.NaN;
+    private float textSizePx = Float.NaN;
+
+    // Line i spans [getLineStart(i), lineEnds[i]) of text.
+    private int[] lineEnds = new int[4];
+    private int lineCount = 0;
+
+    /**
+     * Breaks {@code text} into lines no wider than {@code availableWidthPx}. Does nothing if the
+     * layout is already up to date for these arguments.
+     *
+     * @return whether the line breaks were recomputed.
+     */
+    boolean update(String text, float availableWidthPx, float textSizePx, Measurer measurer) {
+        if (isUpToDate(text, availableWidthPx, textSizePx)) {
+            return false;
+        }
+        this.text = text;
+        this.availableWidthPx = availableWidthPx;
+        this.textSizePx = textSizePx;
+
+        lineCount = 0;
+        int lineStart = 0;
+        while (lineStart < text.length() && availableWidthPx > 0) {
+            int charsThatFit = measurer.breakText(
+                    text, lineStart, text.length(), availableWidthPx);
+            if (charsThatFit <= 0) {
+                // Not even one character fits, there's no point adding empty lines.
+                break;
+            }
+            if (lineCount == lineEnds.length) {
+                int[] newLineEnds = new int[lineEnds.length * 2];
+                System.arraycopy(lineEnds, 0, newLineEnds, 0, lineCount);
+                lineEnds = newLineEnds;
+            }
+            lineStart += charsThatFit;
+            lineEnds[lineCount++] = lineStart;
+        }
+        return true;
+    }
+
+    /** Whether {@link #update} would be a no-op for these arguments. */
+    boolean isUpToDate(String text, float availableWidthPx, float textSizePx) {
+        return text.equals(this.text)
+                && availableWidthPx == this.availableWidthPx
+                && textSizePx == this.textSizePx;
+    }
+
+    /**
+     * Returns how many lines fit in a box of {@code heightPx} when the first baseline sits one
+     * line below the top padding and no baseline may enter the bottom padding.
+     */
+    int getVisibleLineCount(float heightPx, float paddingPx) {
+        int visibleLines = (int) Math.ceil((heightPx - 2 * paddingPx) / textSizePx) - 1;
+        return Math.max(0, Math.min(lineCount, visibleLines));
+    }
+
+    String getText() {
+        return text;
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getLineStart(int line) {
+        return line == 0 ? 0 : lineEnds[line - 1];
+    }
+
+    int getLineEnd(int line) {
+        return lineEnds[line];
+    }
+
+    interface Measurer {
+        /**
+         * Returns how many characters of {@code text[start, end)} fit in {@code maxWidthPx},
+         * with the same contract as {@link android.graphics.Paint#breakText}.
+         */
+        int breakText(String text, int start, int end, float maxWidthPx);
+    }
+}
@@ -0,0 +1,110 @@
+package com.jonkimbel.calendarboy.view;
+
+import android.graphics.Paint;
+
+import com.jonkimbel.calendarboy.layout.DayLayout;
+import com.jonkimbel.calendarboy.layout.LayoutGeometry;
+import com.jonkimbel.calendarboy.layout.Viewport;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Everything {@link CalendarView#onDraw} needs, computed off the UI thread. Never modified after
+ * it's published, so the view can swap a new one in while the old one is still being drawn.
+ * Consecutive snapshots share whatever didn't change (the column layout, line breaks).
+ *
+ * <p>The geometry always spans the whole day. Which part of it is on screen is up to the view's
+ * {@link VisibleWindow}, so zooming and panning never need a new snapshot.
+ */
+final class LayoutSnapshot {
+    static final LayoutSnapshot EMPTY = new LayoutSnapshot(
+            null, null, new LayoutGeometry(), new EventTextLayout[0]);
+
+    /** The events passed to {@link Request}, used to tell whether the column layout is reusable. */
+    @Nullable
+    final EventStore data;
+    @Nullable
+    final DayLayout dayLayout;
+    final LayoutGeometry geometry;
+    final EventTextLayout[] textLayouts;
+
+    private LayoutSnapshot(@Nullable EventStore data, @Nullable DayLayout dayLayout,
+                           LayoutGeometry geometry, EventTextLayout[] textLayouts) {
+        this.data = data;
+        this.dayLayout = dayLayout;
+        this.geometry = geometry;
+        this.textLayouts = textLayouts;
+    }
+
+    @WorkerThread
+    static LayoutSnapshot compute(Request request, LayoutSnapshot previous) {
+        // Column assignment only depends on the data, so reuse it across resizes.
+        DayLayout dayLayout = previous.data == request.data && previous.dayLayout != null
+                ? previous.dayLayout
+                : computeDayLayout(request.data);
+        if (dayLayout.size() == 0) {
+            return new LayoutSnapshot(request.data, dayLayout, new LayoutGeometry(),
+                    new EventTextLayout[0]);
+        }
+
+        LayoutGeometry geometry = new LayoutGeometry();
+        geometry.update(dayLayout, dayLayout.getDayStartTimeMillis(),
+                dayLayout.getDayEndTimeMillis(), request.viewport);
+
+        // Line breaks only depend on the width, so after a change that keeps it (e.g. a new text
+        // color) every one of these is shared with the previous snapshot.
+        EventTextLayout[] textLayouts = new EventTextLayout[geometry.getEventCount()];
+        boolean canReuseTextLayouts = previous.dayLayout == dayLayout;
+        EventTextLayout.Measurer measurer = (text, start, end, maxWidthPx) ->
+                request.textPaint.breakText(text, start, end, true, maxWidthPx, null);
+        float textPaddingPx = request.viewport.getPaddingPx();
+        for (int i = 0; i < textLayouts.length; i++) {
+            String title = request.data.getTitle(dayLayout.getSourceIndex(i));
+            float availableWidthPx =
+                    geometry.getRight(i) - geometry.getLeft(i) - 2 * textPaddingPx;
+            if (canReuseTextLayouts && previous.textLayouts[i].isUpToDate(
+                    title, availableWidthPx, request.textPaint.getTextSize())) {
+                textLayouts[i] = previous.textLayouts[i];
+            } else {
+                textLayouts[i] = new EventTextLayout();
+                textLayouts[i].update(title, availableWidthPx, request.textPaint.getTextSize(),
+                        measurer);
+            }
+        }
+
+        return new LayoutSnapshot(request.data, dayLayout, geometry, textLayouts);
+    }
+
+    private static DayLayout computeDayLayout(EventStore data) {
+        ZonedDateTime now = ZonedDateTime.ofInstant(Instant.now(), ZoneId.systemDefault());
+        ZonedDateTime todayStart = now.toLocalDate().atStartOfDay(ZoneId.systemDefault());
+        ZonedDateTime todayEnd = todayStart.plusDays(1).minusNanos(1000);
+
+        return DayLayout.compute(data,
+                todayStart.toEpochSecond() * 1000, todayEnd.toEpochSecond() * 1000,
+                ZoneId.systemDefault());
+    }
+
+    /** The inputs to a layout, captured on the UI thread. */
+    static final class Request {
+        final EventStore data;
+        final Viewport viewport;
+        final Paint textPaint;
+
+        /**
+         * @param textPaint a private copy of the text paint, so measuring on a worker thread
+         *                  can't race with the view changing it.
+         */
+        Request(EventStore data, Viewport viewport, Paint textPaint) {
+            this.data = data;
+            this.viewport = viewport;
+            this.textPaint = textPaint;
+        }
+    }
+}
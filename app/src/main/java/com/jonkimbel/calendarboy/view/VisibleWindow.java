@@ -0,0 +1,143 @@
+package com.jonkimbel.calendarboy.view;
+
+import com.jonkimbel.calendarboy.layout.LayoutGeometry;
+
+/**
+ * The span of time {@link CalendarView} shows, stretched over a band of the screen. The layout is
+ * computed once for the whole day; pans, pinches and zoom animations only move this window, and
+ * each draw maps the layout's y positions through it with one multiply and one add.
+ */
+final class VisibleWindow {
+    private final long minSpanMillis;
+
+    // The window never leaves [limitStartMillis, limitEndMillis] once limits are set.
+    private long limitStartMillis;
+    private long limitEndMillis;
+    private double startMillis;
+    private double endMillis;
+
+    private float bandTop;
+    private float bandBottom;
+
+    // Content y to screen y for the geometry passed to the last bind().
+    private float contentStartY;
+    private float contentScale = 1;
+
+    /** @param minSpanMillis the shortest span pinching can zoom in to. */
+    VisibleWindow(long minSpanMillis) {
+        this.minSpanMillis = minSpanMillis;
+    }
+
+    /** Sets the screen band the window is stretched over, with its start at the top. */
+    void setBand(float top, float bottom) {
+        this.bandTop = top;
+        this.bandBottom = bottom;
+    }
+
+    /** Sets the times the window has to stay within, moving and shrinking it to fit. */
+    void setLimits(long limitStartMillis, long limitEndMillis) {
+        this.limitStartMillis = limitStartMillis;
+        this.limitEndMillis = limitEndMillis;
+        set(startMillis, endMillis);
+    }
+
+    boolean hasLimits() {
+        return limitEndMillis > limitStartMillis;
+    }
+
+    /**
+     * Shows [startMillis, endMillis). A window longer than the limits is shrunk to them and one
+     * that sticks out of them is moved back inside, keeping its length.
+     */
+    void set(double startMillis, double endMillis) {
+        if (!hasLimits()) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            return;
+        }
+        double span = Math.min(endMillis - startMillis, limitEndMillis - limitStartMillis);
+        this.startMillis = Math.max(limitStartMillis, Math.min(limitEndMillis - span, startMillis));
+        this.endMillis = this.startMillis + span;
+    }
+
+    double getStartMillis() {
+        return startMillis;
+    }
+
+    double getEndMillis() {
+        return endMillis;
+    }
+
+    float timeToScreenY(long timeMillis) {
+        return bandTop + (float) ((timeMillis - startMillis) * getPxPerMillisecond());
+    }
+
+    double screenYToTime(float screenY) {
+        return startMillis + (screenY - bandTop) / getPxPerMillisecond();
+    }
+
+    /**
+     * Prepares {@link #toScreenY} and {@link #toContentY} for drawing {@code geometry}. Geometry
+     * positions are linear in time, so mapping the window's two ends is enough.
+     */
+    void bind(LayoutGeometry geometry) {
+        float startY = geometry.timeToY(Math.round(startMillis));
+        float endY = geometry.timeToY(Math.round(endMillis));
+        if (endY > startY) {
+            contentStartY = startY;
+            contentScale = (bandBottom - bandTop) / (endY - startY);
+        } else {
+            contentStartY = bandTop;
+            contentScale = 1;
+        }
+    }
+
+    float toScreenY(float contentY) {
+        return bandTop + (contentY - contentStartY) * contentScale;
+    }
+
+    float toContentY(float screenY) {
+        return contentStartY + (screenY - bandTop) / contentScale;
+    }
+
+    /** Moves the window so content slides up by {@code dyPx}. */
+    void scrollByPx(float dyPx) {
+        double shiftMillis = dyPx / getPxPerMillisecond();
+        set(startMillis + shiftMillis, endMillis + shiftMillis);
+    }
+
+    /**
+     * Zooms in by {@code factor}, down to the minimum span and out to the limits, keeping the time
+     * at {@code focusScreenY} in place where the limits allow.
+     */
+    void scaleBy(float factor, float focusScreenY) {
+        double focusMillis = screenYToTime(focusScreenY);
+        double focusFraction = (focusScreenY - bandTop) / (bandBottom - bandTop);
+        double span = Math.max(minSpanMillis, (endMillis - startMillis) / factor);
+        double start = focusMillis - focusFraction * span;
+        set(start, start + span);
+    }
+
+    /** How far the window is from the start of the limits, in pixels at the current scale. */
+    int getScrollPx() {
+        return (int) Math.round((startMillis - limitStartMillis) * getPxPerMillisecond());
+    }
+
+    int getMaxScrollPx() {
+        if (!hasLimits()) {
+            return 0;
+        }
+        return (int) ((limitEndMillis - limitStartMillis - (endMillis - startMillis))
+                * getPxPerMillisecond());
+    }
+
+    void setScrollPx(int scrollPx) {
+        double span = endMillis - startMillis;
+        double start = limitStartMillis + scrollPx / getPxPerMillisecond();
+        set(start, start + span);
+    }
+
+    private double getPxPerMillisecond() {
+        return (bandBottom - bandTop) / (endMillis - startMillis);
+    }
+}
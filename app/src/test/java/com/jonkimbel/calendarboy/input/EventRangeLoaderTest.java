@@ -0,0 +1,170 @@
+package com.jonkimbel.calendarboy.input;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventRangeLoaderTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // One event per day at 09:00 plus one running from 22:00 on day 1 to 02:00 on day 2.
+    private final List<Long> queriedDayStarts = new ArrayList<>();
+    private final EventRangeLoader loader = new EventRangeLoader(
+            ZoneOffset.UTC,
+            (startMillis, endMillis, progress) -> {
+                queriedDayStarts.add(startMillis);
+                EventStore.Builder builder = new EventStore.Builder(2);
+                if (startMillis == DAY || startMillis == 2 * DAY) {
+                    builder.add(DAY + 22 * HOUR, 2 * DAY + 2 * HOUR, "overnight");
+                }
+                builder.add(startMillis + 9 * HOUR, startMillis + 10 * HOUR, "day");
+                return Futures.immediateFuture(builder.build());
+            },
+            Long.MAX_VALUE);
+
+    @Test
+    public void load_singleDay_prefetchesNeighbours() throws Exception {
+        EventStore store = Futures.getDone(loader.load(DAY, 2 * DAY, null));
+
+        assertEquals(2, store.size());
+        assertEquals(3, queriedDayStarts.size());
+        assertTrue(queriedDayStarts.contains(0L));
+        assertTrue(queriedDayStarts.contains(2 * DAY));
+    }
+
+    @Test
+    public void load_servesLoadedDaysWithoutQuerying() throws Exception {
+        loader.load(DAY, 2 * DAY, null);
+        queriedDayStarts.clear();
+
+        Futures.getDone(loader.load(2 * DAY, 3 * DAY, null));
+
+        // Only the new prefetch day is queried.
+        assertEquals(1, queriedDayStarts.size());
+        assertEquals(3 * DAY, (long) queriedDayStarts.get(0));
+    }
+
+    @Test
+    public void load_multipleDays_includesSpanningEventsOnce() throws Exception {
+        EventStore store = Futures.getDone(loader.load(DAY, 3 * DAY, null));
+
+        assertEquals(3, store.size());
+        assertEquals("day", store.getTitle(0));
+        assertEquals("overnight", store.getTitle(1));
+        assertEquals("day", store.getTitle(2));
+    }
+
+    @Test
+    public void load_partialRange_filtersToOverlap() throws Exception {
+        EventStore store =
+                Futures.getDone(loader.load(DAY + 12 * HOUR, 2 * DAY + 5 * HOUR, null));
+
+        assertEquals(1, store.size());
+        assertEquals("overnight", store.getTitle(0));
+    }
+
+    @Test
+    public void invalidate_reloadsDaysOnNextRequest() throws Exception {
+        loader.load(DAY, 2 * DAY, null);
+        queriedDayStarts.clear();
+
+        loader.invalidate();
+        assertTrue(queriedDayStarts.isEmpty());
+        loader.load(DAY, 2 * DAY, null);
+
+        assertEquals(3, queriedDayStarts.size());
+    }
+
+    @Test
+    public void load_overBudget_evictsLeastRecentlyUsedDays() throws Exception {
+        long dayBytes = EventStore.EMPTY.getEstimatedSizeBytes() * 4;
+        EventRangeLoader smallLoader = new EventRangeLoader(
+                ZoneOffset.UTC,
+                (startMillis, endMillis, progress) -> {
+                    queriedDayStarts.add(startMillis);
+                    return Futures.immediateFuture(
+                            new EventStore.Builder(1).add(startMillis, endMillis, "day").build());
+                },
+                dayBytes);
+        smallLoader.load(DAY, 2 * DAY, null);
+        smallLoader.load(10 * DAY, 11 * DAY, null);
+        queriedDayStarts.clear();
+
+        // The first window was evicted, the second one is still cached.
+        smallLoader.load(10 * DAY, 11 * DAY, null);
+        assertTrue(queriedDayStarts.isEmpty());
+        smallLoader.load(DAY, 2 * DAY, null);
+        assertEquals(3, queriedDayStarts.size());
+        assertTrue(smallLoader.getCachedBytes() > 0);
+    }
+
+    @Test
+    public void load_forwardsBatchesUntilDone() {
+        List<EventBatchListener> progressByDay = new ArrayList<>();
+        List<SettableFuture<EventStore>> futuresByDay = new ArrayList<>();
+        EventRangeLoader streamingLoader = new EventRangeLoader(
+                ZoneOffset.UTC,
+                (startMillis, endMillis, progress) -> {
+                    SettableFuture<EventStore> future = SettableFuture.create();
+                    progressByDay.add(progress);
+                    futuresByDay.add(future);
+                    return future;
+                },
+                Long.MAX_VALUE);
+        List<EventStore> batches = new ArrayList<>();
+
+        ListenableFuture<EventStore> result = streamingLoader.load(DAY, 2 * DAY, batches::add);
+        EventStore firstBatch = new EventStore.Builder(1).add(DAY, DAY + HOUR, "a").build();
+        progressByDay.get(0).onEvents(firstBatch);
+        progressByDay.get(0).onEvents(EventStore.EMPTY);
+
+        assertEquals(1, batches.size());
+        assertEquals(firstBatch, batches.get(0));
+        assertFalse(result.isDone());
+
+        EventStore secondBatch =
+                new EventStore.Builder(1).add(DAY + HOUR, DAY + 2 * HOUR, "b").build();
+        progressByDay.get(0).onEvents(secondBatch);
+        assertEquals(2, batches.size());
+        assertEquals(secondBatch, batches.get(1));
+
+        futuresByDay.get(0).set(new EventStore.Builder(2).addAll(firstBatch)
+                .addAll(secondBatch).build());
+        progressByDay.get(0).onEvents(secondBatch);
+
+        assertTrue(result.isDone());
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void load_joiningPartWay_getsWhatsLoadedFirst() {
+        List<EventBatchListener> progressByDay = new ArrayList<>();
+        EventRangeLoader streamingLoader = new EventRangeLoader(
+                ZoneOffset.UTC,
+                (startMillis, endMillis, progress) -> {
+                    progressByDay.add(progress);
+                    return SettableFuture.create();
+                },
+                Long.MAX_VALUE);
+        streamingLoader.load(DAY, 2 * DAY, null);
+        // The next day was prefetched and has started streaming.
+        progressByDay.get(1).onEvents(
+                new EventStore.Builder(1).add(2 * DAY, 2 * DAY + HOUR, "a").build());
+        List<EventStore> batches = new ArrayList<>();
+
+        streamingLoader.load(2 * DAY, 3 * DAY, batches::add);
+
+        assertEquals(1, batches.size());
+        assertEquals("a", batches.get(0).getTitle(0));
+    }
+}
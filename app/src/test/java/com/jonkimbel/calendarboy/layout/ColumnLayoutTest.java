@@ -0,0 +1,100 @@
+package com.jonkimbel.calendarboy.layout;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColumnLayoutTest {
+    @Test
+    public void compute_noEvents() {
+        ColumnLayout layout = ColumnLayout.compute(new long[0], new long[0], 0);
+
+        assertEquals(0, layout.size());
+        assertEquals(0, layout.getMaxColumnCount());
+    }
+
+    @Test
+    public void compute_backToBackEventsShareAColumn() {
+        ColumnLayout layout = ColumnLayout.compute(
+                new long[]{0, 10, 20}, new long[]{10, 20, 30}, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, layout.getColumn(i));
+            assertEquals(1, layout.getColumnCount(i));
+        }
+        assertEquals(1, layout.getMaxColumnCount());
+    }
+
+    @Test
+    public void compute_eventThatEndedEarlyGetsClusterWidth() {
+        // A spans the cluster; B ends before C and D make it three wide.
+        ColumnLayout layout = ColumnLayout.compute(
+                new long[]{0, 0, 5, 5}, new long[]{10, 2, 7, 7}, 4);
+
+        assertArrayEquals(new int[]{0, 1, 1, 2}, columns(layout));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(3, layout.getColumnCount(i));
+        }
+    }
+
+    @Test
+    public void compute_reusesFreedColumns() {
+        // B frees column 1 while C still occupies column 2, so D must take column 1.
+        ColumnLayout layout = ColumnLayout.compute(
+                new long[]{0, 0, 1, 6}, new long[]{10, 5, 10, 8}, 4);
+
+        assertArrayEquals(new int[]{0, 1, 2, 1}, columns(layout));
+        assertEquals(3, layout.getMaxColumnCount());
+    }
+
+    @Test
+    public void compute_separateClustersHaveIndependentWidths() {
+        ColumnLayout layout = ColumnLayout.compute(
+                new long[]{0, 0, 20}, new long[]{10, 10, 30}, 3);
+
+        assertEquals(2, layout.getColumnCount(0));
+        assertEquals(2, layout.getColumnCount(1));
+        assertEquals(0, layout.getColumn(2));
+        assertEquals(1, layout.getColumnCount(2));
+        assertEquals(2, layout.getMaxColumnCount());
+    }
+
+    @Test
+    public void compute_randomEvents_overlappingEventsNeverShareAColumn() {
+        Random random = new Random(42);
+        int count = 2_000;
+        long[] startTimes = new long[count];
+        long[] endTimes = new long[count];
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            time += random.nextInt(10);
+            startTimes[i] = time;
+            endTimes[i] = time + 1 + random.nextInt(60);
+        }
+
+        ColumnLayout layout = ColumnLayout.compute(startTimes, endTimes, count);
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(layout.getColumn(i) < layout.getColumnCount(i));
+            for (int j = i + 1; j < count && startTimes[j] < endTimes[i]; j++) {
+                assertNotEquals(layout.getColumn(i), layout.getColumn(j));
+                assertEquals(layout.getColumnCount(i), layout.getColumnCount(j));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compute_unsortedEvents_throws() {
+        ColumnLayout.compute(new long[]{10, 0}, new long[]{20, 5}, 2);
+    }
+
+    private static int[] columns(ColumnLayout layout) {
+        int[] columns = new int[layout.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = layout.getColumn(i);
+        }
+        return columns;
+    }
+}
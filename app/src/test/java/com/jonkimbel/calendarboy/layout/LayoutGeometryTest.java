@@ -0,0 +1,121 @@
+package com.jonkimbel.calendarboy.layout;
+
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LayoutGeometryTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_START = TimeUnit.DAYS.toMillis(18000);
+    private static final long DAY_END = DAY_START + 24 * HOUR;
+    private static final float DELTA = 0.001f;
+
+    // 100px of usable height and 200px of usable width once the 10px padding is removed.
+    private static final Viewport VIEWPORT = new Viewport(0, 0, 220, 120, 10);
+
+    @Test
+    public void dayLayout_dropsEventsOutsideTheDayAndCapsTheExtent() {
+        DayLayout dayLayout = DayLayout.compute(
+                events(new long[]{DAY_START - 2 * HOUR, DAY_START - HOUR, DAY_START + 9 * HOUR},
+                        new long[]{DAY_START - HOUR, DAY_START + HOUR, DAY_END + HOUR}),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+
+        assertEquals(2, dayLayout.size());
+        assertEquals(1, dayLayout.getSourceIndex(0));
+        assertEquals(2, dayLayout.getSourceIndex(1));
+        assertEquals(DAY_START, dayLayout.getDataStartTimeMillis());
+        assertEquals(DAY_END, dayLayout.getDataEndTimeMillis());
+        assertEquals(23, dayLayout.getDividerCount());
+    }
+
+    @Test
+    public void update_mapsWindowOntoPaddedViewport() {
+        DayLayout dayLayout = DayLayout.compute(
+                events(new long[]{DAY_START + 9 * HOUR, DAY_START + 10 * HOUR},
+                        new long[]{DAY_START + 11 * HOUR, DAY_START + 13 * HOUR}),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+        LayoutGeometry geometry = new LayoutGeometry();
+
+        geometry.update(dayLayout, DAY_START + 9 * HOUR, DAY_START + 13 * HOUR, VIEWPORT);
+
+        assertEquals(2, geometry.getEventCount());
+        // Two columns of (200 - 10) / 2 = 95px.
+        assertRect(geometry, 0, 10, 10, 105, 60);
+        assertRect(geometry, 1, 115, 35, 210, 110);
+        // 10:00, 11:00 and 12:00.
+        assertEquals(3, geometry.getDividerCount());
+        assertEquals(35, geometry.getDividerY(0), DELTA);
+        assertEquals(85, geometry.getDividerY(2), DELTA);
+    }
+
+    @Test
+    public void update_zoomWindow_onlyMovesEventsVertically() {
+        DayLayout dayLayout = DayLayout.compute(
+                events(new long[]{DAY_START + 9 * HOUR, DAY_START + 10 * HOUR},
+                        new long[]{DAY_START + 11 * HOUR, DAY_START + 13 * HOUR}),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+        LayoutGeometry geometry = new LayoutGeometry();
+
+        geometry.update(dayLayout, DAY_START + 10 * HOUR, DAY_START + 11 * HOUR, VIEWPORT);
+
+        assertRect(geometry, 0, 10, -90, 105, 110);
+        assertRect(geometry, 1, 115, 10, 210, 310);
+        assertEquals(0, geometry.getDividerCount());
+        assertEquals(60, geometry.timeToY(DAY_START + 10 * HOUR + HOUR / 2), DELTA);
+    }
+
+    @Test
+    public void update_emptyWindow_producesNothing() {
+        DayLayout dayLayout = DayLayout.compute(
+                events(new long[]{DAY_START}, new long[]{DAY_START + HOUR}),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+        LayoutGeometry geometry = new LayoutGeometry();
+
+        geometry.update(dayLayout, DAY_START, DAY_START, VIEWPORT);
+
+        assertEquals(0, geometry.getEventCount());
+        assertEquals(0, geometry.getDividerCount());
+    }
+
+    @Test
+    public void visibleRange_boundsEventsCrossingBand() {
+        // 9-17 hides 10-11; 12-13 follows.
+        DayLayout dayLayout = DayLayout.compute(
+                events(new long[]{DAY_START + 9 * HOUR, DAY_START + 10 * HOUR,
+                                DAY_START + 12 * HOUR},
+                        new long[]{DAY_START + 17 * HOUR, DAY_START + 11 * HOUR,
+                                DAY_START + 13 * HOUR}),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+        LayoutGeometry geometry = new LayoutGeometry();
+        // 12.5px per hour, 9:00 at y = 10.
+        geometry.update(dayLayout, DAY_START + 9 * HOUR, DAY_START + 17 * HOUR, VIEWPORT);
+
+        // Band from 11:30 to 11:45: only the long event crosses it, but the range can't skip
+        // the hidden short one.
+        assertEquals(0, geometry.getFirstIndexEndingBelow(41.25f));
+        assertEquals(2, geometry.getFirstIndexStartingAtOrBelow(44.375f));
+        // Band from 17:00 down: nothing.
+        assertEquals(3, geometry.getFirstIndexEndingBelow(110));
+    }
+
+    private static EventStore events(long[] startTimes, long[] endTimes) {
+        EventStore.Builder builder = new EventStore.Builder(startTimes.length);
+        for (int i = 0; i < startTimes.length; i++) {
+            builder.add(startTimes[i], endTimes[i], "Event " + i);
+        }
+        return builder.build();
+    }
+
+    private static void assertRect(LayoutGeometry geometry, int index,
+                                   float left, float top, float right, float bottom) {
+        assertEquals(left, geometry.getLeft(index), DELTA);
+        assertEquals(top, geometry.getTop(index), DELTA);
+        assertEquals(right, geometry.getRight(index), DELTA);
+        assertEquals(bottom, geometry.getBottom(index), DELTA);
+    }
+}
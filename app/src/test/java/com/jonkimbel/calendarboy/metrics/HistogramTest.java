@@ -0,0 +1,45 @@
+package com.jonkimbel.calendarboy.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void empty() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void getPercentile_boundsValueWithinItsBucket() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        // 50 is in [32, 64), 99 in [64, 128) but capped by the max.
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void copy_isIndependent() {
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        Histogram copy = histogram.copy();
+
+        histogram.record(500);
+        histogram.clear();
+
+        assertEquals(1, copy.getCount());
+        assertEquals(5, copy.getMax());
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,67 @@
+package com.jonkimbel.calendarboy.model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class EventStoreCodecTest {
+    @Test
+    public void decode_roundTripsEncode() throws Exception {
+        EventStore store = new EventStore.Builder(3)
+                .add(0, 10, "standup")
+                .add(5, 15, "caf\u00e9")
+                .add(20, 30, "standup")
+                .build();
+
+        EventStore decoded = EventStoreCodec.decode(EventStoreCodec.encode(store));
+
+        assertEquals(store, decoded);
+        assertEquals(2, decoded.getDistinctTitleCount());
+        assertEquals("caf\u00e9", decoded.getTitle(1));
+    }
+
+    @Test
+    public void decode_empty() throws Exception {
+        assertEquals(EventStore.EMPTY,
+                EventStoreCodec.decode(EventStoreCodec.encode(EventStore.EMPTY)));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_truncated_throws() throws Exception {
+        ByteBuffer encoded = EventStoreCodec.encode(
+                new EventStore.Builder(1).add(0, 10, "a").build());
+        encoded.limit(encoded.limit() - 1);
+
+        EventStoreCodec.decode(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_badTitleIndex_throws() throws Exception {
+        ByteBuffer encoded = EventStoreCodec.encode(
+                new EventStore.Builder(1).add(0, 10, "a").build());
+        encoded.putInt(encoded.limit() - 4, 7);
+
+        EventStoreCodec.decode(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_hugeTitleCount_throws() throws Exception {
+        ByteBuffer encoded = EventStoreCodec.encode(
+                new EventStore.Builder(1).add(0, 10, "a").build());
+        encoded.putInt(8, Integer.MAX_VALUE);
+
+        EventStoreCodec.decode(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_hugeTitleLength_throws() throws Exception {
+        ByteBuffer encoded = EventStoreCodec.encode(
+                new EventStore.Builder(1).add(0, 10, "a").build());
+        encoded.putInt(16, Integer.MAX_VALUE);
+
+        EventStoreCodec.decode(encoded);
+    }
+}
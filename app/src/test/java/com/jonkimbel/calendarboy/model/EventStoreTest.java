@@ -0,0 +1,153 @@
+package com.jonkimbel.calendarboy.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EventStoreTest {
+    @Test
+    public void build_sortsOutOfOrderRows() {
+        EventStore store = new EventStore.Builder(0)
+                .add(30, 40, "c")
+                .add(10, 30, "b")
+                .add(10, 20, "a")
+                .build();
+
+        assertEquals(3, store.size());
+        assertEquals("a", store.getTitle(0));
+        assertEquals("b", store.getTitle(1));
+        assertEquals("c", store.getTitle(2));
+        assertEquals(10, store.getStartTimeMillis(1));
+        assertEquals(30, store.getEndTimeMillis(1));
+    }
+
+    @Test
+    public void build_again_mergesLaterRowsIn() {
+        EventStore.Builder builder = new EventStore.Builder(0)
+                .add(10, 20, "b")
+                .add(30, 40, "d");
+        EventStore first = builder.build();
+        EventStore second = builder
+                .add(20, 30, "c")
+                .add(0, 10, "a")
+                .build();
+
+        assertEquals(2, first.size());
+        assertEquals(4, second.size());
+        for (int i = 0; i < second.size(); i++) {
+            assertEquals(10 * i, second.getStartTimeMillis(i));
+            assertEquals(String.valueOf((char) ('a' + i)), second.getTitle(i));
+        }
+    }
+
+    @Test
+    public void addAll_mapsTitlesIntoBuilder() {
+        EventStore first = new EventStore.Builder(2).add(0, 10, "a").add(10, 20, "b").build();
+        EventStore second = new EventStore.Builder(2).add(20, 30, "b").add(30, 40, "c").build();
+
+        EventStore store = new EventStore.Builder(0).addAll(first).addAll(second).build();
+
+        assertEquals(4, store.size());
+        assertEquals(3, store.getDistinctTitleCount());
+        assertEquals(store.getTitleIndex(1), store.getTitleIndex(2));
+        assertEquals("c", store.getTitle(3));
+    }
+
+    @Test
+    public void build_internsTitles() {
+        EventStore store = new EventStore.Builder(3)
+                .add(0, 10, "standup")
+                .add(10, 20, "1:1")
+                .add(20, 30, new String("standup"))
+                .build();
+
+        assertEquals(2, store.getDistinctTitleCount());
+        assertEquals(store.getTitleIndex(0), store.getTitleIndex(2));
+        assertSame(store.getTitle(0), store.getTitle(2));
+    }
+
+    @Test
+    public void build_nullTitleBecomesEmpty() {
+        EventStore store = new EventStore.Builder(1).add(0, 10, null).build();
+
+        assertEquals("", store.getTitle(0));
+    }
+
+    @Test
+    public void asList_viewsEventsInOrder() {
+        EventStore store = new EventStore.Builder(2)
+                .add(0, 10, "a")
+                .add(5, 15, "b")
+                .build();
+
+        assertEquals(2, store.asList().size());
+        Event event = store.asList().get(1);
+        assertEquals(5, event.getStartTimeMillis());
+        assertEquals(15, event.getEndTimeMillis());
+        assertEquals("b", event.getTitle());
+    }
+
+    @Test
+    public void merge_interleavesSortedStores() {
+        EventStore first = new EventStore.Builder(3)
+                .add(0, 10, "a")
+                .add(20, 30, "c")
+                .add(40, 50, "e")
+                .build();
+        EventStore second = new EventStore.Builder(2)
+                .add(10, 20, "b")
+                .add(20, 25, "c'")
+                .build();
+
+        EventStore merged = EventStore.merge(
+                Arrays.asList(first, EventStore.EMPTY, second));
+
+        assertEquals(5, merged.size());
+        assertEquals("a", merged.getTitle(0));
+        assertEquals("b", merged.getTitle(1));
+        assertEquals("c'", merged.getTitle(2));
+        assertEquals("c", merged.getTitle(3));
+        assertEquals("e", merged.getTitle(4));
+    }
+
+    @Test
+    public void merge_singleNonEmptyStore_returnsIt() {
+        EventStore only = new EventStore.Builder(1).add(0, 10, "a").build();
+
+        assertSame(only, EventStore.merge(Arrays.asList(EventStore.EMPTY, only)));
+    }
+
+    @Test
+    public void getFirstIndexEndingAfter_skipsEventsEndedBeforeTime() {
+        EventStore store = new EventStore.Builder(4)
+                .add(0, 10, "a")
+                .add(5, 100, "long")
+                .add(20, 30, "nested")
+                .add(200, 210, "b")
+                .build();
+
+        assertEquals(0, store.getFirstIndexEndingAfter(-1));
+        assertEquals(1, store.getFirstIndexEndingAfter(10));
+        // "nested" ends before 50, but "long" before it doesn't.
+        assertEquals(1, store.getFirstIndexEndingAfter(50));
+        assertEquals(3, store.getFirstIndexEndingAfter(100));
+        assertEquals(4, store.getFirstIndexEndingAfter(210));
+    }
+
+    @Test
+    public void getFirstIndexStartingAtOrAfter() {
+        EventStore store = new EventStore.Builder(3)
+                .add(0, 10, "a")
+                .add(20, 30, "b")
+                .add(20, 40, "c")
+                .build();
+
+        assertEquals(0, store.getFirstIndexStartingAtOrAfter(0));
+        assertEquals(1, store.getFirstIndexStartingAtOrAfter(1));
+        assertEquals(1, store.getFirstIndexStartingAtOrAfter(20));
+        assertEquals(3, store.getFirstIndexStartingAtOrAfter(21));
+        assertEquals(0, EventStore.EMPTY.getFirstIndexStartingAtOrAfter(5));
+    }
+}
@@ -0,0 +1,90 @@
+package com.jonkimbel.calendarboy.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FreeTimeIndexTest {
+    @Test
+    public void mergesOverlappingAndTouchingEvents() {
+        FreeTimeIndex index = new FreeTimeIndex(new EventStore.Builder(0)
+                .add(10, 20, "a")
+                .add(15, 30, "b")
+                .add(30, 40, "c")
+                .add(50, 60, "d")
+                .add(55, 58, "e")
+                .build());
+
+        assertEquals(2, index.getBusyIntervalCount());
+    }
+
+    @Test
+    public void findFreeBlock_returnsStartWhenAlreadyFree() {
+        FreeTimeIndex index = new FreeTimeIndex(new EventStore.Builder(0)
+                .add(10, 20, "a")
+                .build());
+
+        assertEquals(0, index.findFreeBlock(0, 10));
+        assertEquals(25, index.findFreeBlock(25, 1000));
+    }
+
+    @Test
+    public void findFreeBlock_skipsGapsThatAreTooShort() {
+        FreeTimeIndex index = new FreeTimeIndex(new EventStore.Builder(0)
+                .add(10, 20, "a")
+                .add(25, 30, "b")
+                .add(32, 40, "c")
+                .add(50, 60, "d")
+                .build());
+
+        // Free from 5 to 10 isn't enough; neither are 20-25 and 30-32.
+        assertEquals(40, index.findFreeBlock(5, 10));
+        assertEquals(20, index.findFreeBlock(12, 5));
+        assertEquals(30, index.findFreeBlock(26, 2));
+        // Nothing long enough before the end of the last event.
+        assertEquals(60, index.findFreeBlock(0, 11));
+    }
+
+    @Test
+    public void findFreeBlock_emptyStore() {
+        FreeTimeIndex index = new FreeTimeIndex(EventStore.EMPTY);
+
+        assertEquals(0, index.getBusyIntervalCount());
+        assertEquals(123, index.findFreeBlock(123, 1000));
+    }
+
+    @Test
+    public void findFreeBlock_matchesLinearScan() {
+        Random random = new Random(42);
+        EventStore.Builder builder = new EventStore.Builder(0);
+        for (int i = 0; i < 500; i++) {
+            long start = random.nextInt(10_000);
+            builder.add(start, start + 1 + random.nextInt(40), "event");
+        }
+        EventStore events = builder.build();
+        FreeTimeIndex index = new FreeTimeIndex(events);
+
+        for (int i = 0; i < 500; i++) {
+            long notBefore = random.nextInt(10_500);
+            long duration = random.nextInt(60);
+            assertEquals(linearFindFreeBlock(events, notBefore, duration),
+                    index.findFreeBlock(notBefore, duration));
+        }
+    }
+
+    private static long linearFindFreeBlock(EventStore events, long notBefore, long duration) {
+        long candidate = notBefore;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getEndTimeMillis(i) <= candidate) {
+                continue;
+            }
+            if (events.getStartTimeMillis(i) - candidate >= duration) {
+                return candidate;
+            }
+            candidate = Math.max(candidate, events.getEndTimeMillis(i));
+        }
+        return candidate;
+    }
+}
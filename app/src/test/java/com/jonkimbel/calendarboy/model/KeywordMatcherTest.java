@@ -0,0 +1,65 @@
+package com.jonkimbel.calendarboy.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeywordMatcherTest {
+    private static final int EMAILS = 1;
+    private static final int REVIEWS = 1 << 1;
+    private static final int DEBT = 1 << 2;
+
+    private static final KeywordMatcher MATCHER = new KeywordMatcher(new String[][]{
+            {"email", "inbox"},
+            {"code review", "review", "pr"},
+            {"tech debt", "refactor", "cleanup"},
+    });
+
+    @Test
+    public void match_findsEveryCategoryInOnePass() {
+        assertEquals(EMAILS, MATCHER.match("Inbox zero"));
+        assertEquals(REVIEWS | DEBT, MATCHER.match("Code review: refactor of the parser"));
+        assertEquals(0, MATCHER.match("Lunch"));
+    }
+
+    @Test
+    public void match_ignoresCase() {
+        assertEquals(DEBT, MATCHER.match("TECH DEBT Friday"));
+    }
+
+    @Test
+    public void match_onlyCountsWholeWords() {
+        assertEquals(REVIEWS, MATCHER.match("Review PR #12"));
+        assertEquals(0, MATCHER.match("Sprint planning"));
+        assertEquals(0, MATCHER.match("Emails"));
+        assertEquals(REVIEWS, MATCHER.match("code-review"));
+    }
+
+    @Test
+    public void match_keywordInsideLongerPartialMatch() {
+        // "code revie" fails over to "revie" before "review" completes.
+        KeywordMatcher matcher = new KeywordMatcher(new String[][]{{"code reviews"}, {"review"}});
+
+        assertEquals(1 << 1, matcher.match("code review"));
+        assertEquals(1 | 1 << 1, matcher.match("code reviews and review"));
+    }
+
+    @Test
+    public void categoryIndex_groupsEventsByCategory() {
+        EventStore events = new EventStore.Builder(0)
+                .add(10, 20, "Inbox")
+                .add(20, 30, "Lunch")
+                .add(30, 40, "Review PR")
+                .add(40, 50, "inbox")
+                .build();
+
+        CategoryIndex index = new CategoryIndex(events, MATCHER, 3);
+
+        assertEquals(2, index.getEventCount(0));
+        assertEquals(0, index.getEventIndex(0, 0));
+        assertEquals(3, index.getEventIndex(0, 1));
+        assertEquals(1, index.getEventCount(1));
+        assertEquals(2, index.getEventIndex(1, 0));
+        assertEquals(0, index.getEventCount(2));
+    }
+}
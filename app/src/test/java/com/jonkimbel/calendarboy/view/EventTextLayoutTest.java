@@ -0,0 +1,121 @@
+package com.jonkimbel.calendarboy.view;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link EventTextLayout}. Text is measured with a fixed advance per
+ * character so no {@link android.graphics.Paint} is needed.
+ */
+public class EventTextLayoutTest {
+    private static final float CHAR_WIDTH_PX = 10;
+    private static final float TEXT_SIZE_PX = 16;
+    private static final float PADDING_PX = 8;
+
+    private static final EventTextLayout.Measurer MEASURER = (text, start, end, maxWidthPx) ->
+            Math.min(end - start, (int) (maxWidthPx / CHAR_WIDTH_PX));
+
+    @Test
+    public void update_breaksTextIntoLinesThatFit() {
+        EventTextLayout layout = new EventTextLayout();
+
+        assertTrue(layout.update("abcdefghij", 40, TEXT_SIZE_PX, MEASURER));
+
+        assertEquals(3, layout.getLineCount());
+        assertLine(layout, 0, "abcd");
+        assertLine(layout, 1, "efgh");
+        assertLine(layout, 2, "ij");
+    }
+
+    @Test
+    public void update_sameKey_isCached() {
+        EventTextLayout layout = new EventTextLayout();
+        layout.update("standup", 40, TEXT_SIZE_PX, MEASURER);
+
+        assertFalse(layout.update(new String("standup"), 40, TEXT_SIZE_PX, MEASURER));
+        assertTrue(layout.update("standup", 50, TEXT_SIZE_PX, MEASURER));
+        assertTrue(layout.update("standup", 50, TEXT_SIZE_PX + 1, MEASURER));
+        assertTrue(layout.update("retro", 50, TEXT_SIZE_PX + 1, MEASURER));
+    }
+
+    @Test
+    public void update_tooNarrowForOneCharacter_hasNoLines() {
+        EventTextLayout layout = new EventTextLayout();
+
+        layout.update("standup", 5, TEXT_SIZE_PX, MEASURER);
+
+        assertEquals(0, layout.getLineCount());
+    }
+
+    @Test
+    public void getVisibleLineCount_matchesBaselinesThatFitInsidePadding() {
+        EventTextLayout layout = new EventTextLayout();
+        layout.update("abcdefghijklmnopqrstuvwxyz", 40, TEXT_SIZE_PX, MEASURER);
+
+        // Baselines at 24, 40 and 56px; the bottom padding starts at height - 8px.
+        assertEquals(0, layout.getVisibleLineCount(32, PADDING_PX));
+        assertEquals(1, layout.getVisibleLineCount(33, PADDING_PX));
+        assertEquals(2, layout.getVisibleLineCount(64, PADDING_PX));
+        assertEquals(layout.getLineCount(), layout.getVisibleLineCount(1000, PADDING_PX));
+        assertEquals(0, layout.getVisibleLineCount(4, PADDING_PX));
+    }
+
+    @Test
+    public void repeatedDrawsOfUnchangedLayout_doNotAllocate() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationCounter =
+                (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+        allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+        EventTextLayout[] layouts = new EventTextLayout[50];
+        String[] titles = new String[layouts.length];
+        for (int i = 0; i < layouts.length; i++) {
+            layouts[i] = new EventTextLayout();
+            titles[i] = "Event number " + i + " with a reasonably long title";
+        }
+
+        // Warm up so class loading and JIT compilation don't count as allocations.
+        long checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            checksum += simulateFrame(layouts, titles);
+        }
+        long threadId = Thread.currentThread().getId();
+        long overheadStart = allocationCounter.getThreadAllocatedBytes(threadId);
+        long measurementOverhead =
+                allocationCounter.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        long before = allocationCounter.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000; i++) {
+            checksum += simulateFrame(layouts, titles);
+        }
+        long after = allocationCounter.getThreadAllocatedBytes(threadId);
+
+        assertTrue(checksum > 0);
+        assertEquals(0, after - before - measurementOverhead);
+    }
+
+    /** Does the same per-frame text work as CalendarView: a cache check plus the line loop. */
+    private static long simulateFrame(EventTextLayout[] layouts, String[] titles) {
+        long drawnChars = 0;
+        for (int i = 0; i < layouts.length; i++) {
+            EventTextLayout layout = layouts[i];
+            layout.update(titles[i], 120, TEXT_SIZE_PX, MEASURER);
+            int visibleLineCount = layout.getVisibleLineCount(90, PADDING_PX);
+            for (int line = 0; line < visibleLineCount; line++) {
+                drawnChars += layout.getLineEnd(line) - layout.getLineStart(line);
+            }
+        }
+        return drawnChars;
+    }
+
+    private static void assertLine(EventTextLayout layout, int line, String expected) {
+        assertEquals(expected, layout.getText().substring(
+                layout.getLineStart(line), layout.getLineEnd(line)));
+    }
+}
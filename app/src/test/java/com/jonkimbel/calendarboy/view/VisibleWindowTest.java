@@ -0,0 +1,100 @@
+package com.jonkimbel.calendarboy.view;
+
+import com.jonkimbel.calendarboy.layout.DayLayout;
+import com.jonkimbel.calendarboy.layout.LayoutGeometry;
+import com.jonkimbel.calendarboy.layout.Viewport;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Local unit tests for {@link VisibleWindow}. */
+public class VisibleWindowTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_START = TimeUnit.DAYS.toMillis(18000);
+    private static final long DAY_END = DAY_START + 24 * HOUR;
+    private static final float DELTA = 0.01f;
+
+    @Test
+    public void set_keepsWindowInsideLimits() {
+        VisibleWindow window = newWindow();
+
+        window.set(DAY_START - 2 * HOUR, DAY_START + 2 * HOUR);
+        assertEquals(DAY_START, window.getStartMillis(), 1);
+        assertEquals(DAY_START + 4 * HOUR, window.getEndMillis(), 1);
+
+        window.set(DAY_START - HOUR, DAY_END + HOUR);
+        assertEquals(DAY_START, window.getStartMillis(), 1);
+        assertEquals(DAY_END, window.getEndMillis(), 1);
+    }
+
+    @Test
+    public void timeToScreenY_stretchesWindowOverBand() {
+        VisibleWindow window = newWindow();
+        window.set(DAY_START + 9 * HOUR, DAY_START + 13 * HOUR);
+
+        assertEquals(10, window.timeToScreenY(DAY_START + 9 * HOUR), DELTA);
+        assertEquals(35, window.timeToScreenY(DAY_START + 10 * HOUR), DELTA);
+        assertEquals(110, window.timeToScreenY(DAY_START + 13 * HOUR), DELTA);
+        assertEquals(DAY_START + 10 * HOUR, window.screenYToTime(35), 1);
+    }
+
+    @Test
+    public void bind_mapsWholeDayGeometryIntoWindow() {
+        DayLayout dayLayout = DayLayout.compute(
+                new EventStore.Builder(1)
+                        .add(DAY_START + 10 * HOUR, DAY_START + 11 * HOUR, "standup")
+                        .build(),
+                DAY_START, DAY_END, ZoneOffset.UTC);
+        LayoutGeometry geometry = new LayoutGeometry();
+        geometry.update(dayLayout, DAY_START, DAY_END, new Viewport(0, 0, 220, 120, 10));
+        VisibleWindow window = newWindow();
+        window.set(DAY_START + 9 * HOUR, DAY_START + 13 * HOUR);
+
+        window.bind(geometry);
+
+        assertEquals(35, window.toScreenY(geometry.getTop(0)), DELTA);
+        assertEquals(60, window.toScreenY(geometry.getBottom(0)), DELTA);
+        assertEquals(geometry.getTop(0), window.toContentY(35), DELTA);
+    }
+
+    @Test
+    public void scaleBy_keepsFocusInPlaceAndStopsAtMinimumSpan() {
+        VisibleWindow window = newWindow();
+        window.set(DAY_START + 9 * HOUR, DAY_START + 13 * HOUR);
+
+        window.scaleBy(2, 35);
+        assertEquals(DAY_START + 10 * HOUR, window.screenYToTime(35), 1);
+        assertEquals(2 * HOUR, window.getEndMillis() - window.getStartMillis(), 1);
+
+        window.scaleBy(100, 35);
+        assertEquals(HOUR / 2, window.getEndMillis() - window.getStartMillis(), 1);
+        assertEquals(DAY_START + 10 * HOUR, window.screenYToTime(35), 1);
+    }
+
+    @Test
+    public void scrollPx_coversRestOfDay() {
+        VisibleWindow window = newWindow();
+        window.set(DAY_START, DAY_START + 4 * HOUR);
+
+        // 100px per 4 hours, so the other 20 hours are 500px away.
+        assertEquals(500, window.getMaxScrollPx());
+        window.scrollByPx(25);
+        assertEquals(25, window.getScrollPx());
+        assertEquals(DAY_START + HOUR, window.getStartMillis(), 1);
+
+        window.setScrollPx(1000);
+        assertEquals(DAY_END, window.getEndMillis(), 1);
+    }
+
+    private static VisibleWindow newWindow() {
+        VisibleWindow window = new VisibleWindow(HOUR / 2);
+        window.setBand(10, 110);
+        window.setLimits(DAY_START, DAY_END);
+        return window;
+    }
+}
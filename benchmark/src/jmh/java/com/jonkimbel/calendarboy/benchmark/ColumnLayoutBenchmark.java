@@ -0,0 +1,43 @@
+package com.jonkimbel.calendarboy.benchmark;
+
+import com.jonkimbel.calendarboy.layout.ColumnLayout;
+import com.jonkimbel.calendarboy.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** The column sweep CalendarView runs whenever its data changes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumnLayoutBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int eventCount;
+
+    @Param({"1", "4", "16"})
+    public int meanOverlap;
+
+    private long[] startTimes;
+    private long[] endTimes;
+
+    @Setup
+    public void setUp() {
+        List<Event> events = EventFixtures.sortedEvents(eventCount, meanOverlap);
+        startTimes = EventFixtures.startTimes(events);
+        endTimes = EventFixtures.endTimes(events);
+    }
+
+    @Benchmark
+    public ColumnLayout compute() {
+        return ColumnLayout.compute(startTimes, endTimes, eventCount);
+    }
+}
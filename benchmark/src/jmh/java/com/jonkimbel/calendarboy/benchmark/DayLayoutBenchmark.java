@@ -0,0 +1,73 @@
+package com.jonkimbel.calendarboy.benchmark;
+
+import com.jonkimbel.calendarboy.layout.DayLayout;
+import com.jonkimbel.calendarboy.layout.LayoutGeometry;
+import com.jonkimbel.calendarboy.layout.Viewport;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full layout pipeline: {@link DayLayout} runs when the data changes and
+ * {@link LayoutGeometry} runs on every zoom or resize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DayLayoutBenchmark {
+    private static final Viewport VIEWPORT = new Viewport(0, 0, 1080, 1800, 24);
+
+    @Param({"10", "1000", "100000"})
+    public int eventCount;
+
+    @Param({"1", "4", "16"})
+    public int meanOverlap;
+
+    private EventStore events;
+    private long dayStartMillis;
+    private long dayEndMillis;
+    private DayLayout dayLayout;
+    private final LayoutGeometry geometry = new LayoutGeometry();
+    private long[] zoomWindowStarts;
+    private int zoomIndex = 0;
+
+    @Setup
+    public void setUp() {
+        events = EventFixtures.store(EventFixtures.sortedEvents(eventCount, meanOverlap));
+        // Treat the whole fixture as one "day" so every event is laid out.
+        dayStartMillis = events.getStartTimeMillis(0);
+        dayEndMillis = events.getEndTimeMillis(eventCount - 1) + TimeUnit.DAYS.toMillis(1);
+        dayLayout = DayLayout.compute(events, dayStartMillis, dayEndMillis, ZoneOffset.UTC);
+
+        zoomWindowStarts = new long[Math.min(eventCount, 64)];
+        for (int i = 0; i < zoomWindowStarts.length; i++) {
+            zoomWindowStarts[i] =
+                    events.getStartTimeMillis(i * eventCount / zoomWindowStarts.length);
+        }
+    }
+
+    @Benchmark
+    public DayLayout dayLayout() {
+        return DayLayout.compute(events, dayStartMillis, dayEndMillis, ZoneOffset.UTC);
+    }
+
+    /** What zooming to the next event costs. */
+    @Benchmark
+    public LayoutGeometry zoomGeometry() {
+        zoomIndex = (zoomIndex + 1) % zoomWindowStarts.length;
+        long windowStart = zoomWindowStarts[zoomIndex];
+        geometry.update(dayLayout, windowStart, windowStart + TimeUnit.HOURS.toMillis(2),
+                VIEWPORT);
+        return geometry;
+    }
+}
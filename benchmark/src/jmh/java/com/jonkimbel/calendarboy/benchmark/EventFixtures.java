@@ -0,0 +1,77 @@
+package com.jonkimbel.calendarboy.benchmark;
+
+import com.jonkimbel.calendarboy.model.Event;
+import com.jonkimbel.calendarboy.model.EventStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Deterministic synthetic calendars for the benchmarks. */
+public final class EventFixtures {
+    private static final long MEAN_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(45);
+    private static final long DAY_START_MILLIS = 1_555_000_000_000L;
+
+    private EventFixtures() {}
+
+    /**
+     * Returns {@code count} events sorted by {@link Event#compare}, spaced so that on average
+     * {@code meanOverlap} events are running at any moment.
+     */
+    public static List<Event> sortedEvents(int count, int meanOverlap) {
+        Random random = new Random(count * 31L + meanOverlap);
+        long meanGapMillis = Math.max(1, MEAN_DURATION_MILLIS / meanOverlap);
+        List<Event> events = new ArrayList<>(count);
+        long startTimeMillis = DAY_START_MILLIS;
+        for (int i = 0; i < count; i++) {
+            startTimeMillis += (long) (random.nextDouble() * 2 * meanGapMillis);
+            long durationMillis = TimeUnit.MINUTES.toMillis(15)
+                    + (long) (random.nextDouble() * 2 * (MEAN_DURATION_MILLIS
+                    - TimeUnit.MINUTES.toMillis(15)));
+            events.add(new Event(startTimeMillis, startTimeMillis + durationMillis,
+                    "Event " + i + " " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]));
+        }
+        return events;
+    }
+
+    public static List<Event> shuffledEvents(int count, int meanOverlap) {
+        List<Event> events = sortedEvents(count, meanOverlap);
+        Collections.shuffle(events, new Random(count));
+        return events;
+    }
+
+    public static EventStore store(List<Event> events) {
+        EventStore.Builder builder = new EventStore.Builder(events.size());
+        for (Event event : events) {
+            builder.add(event.getStartTimeMillis(), event.getEndTimeMillis(), event.getTitle());
+        }
+        return builder.build();
+    }
+
+    public static long[] startTimes(List<Event> events) {
+        long[] startTimes = new long[events.size()];
+        for (int i = 0; i < startTimes.length; i++) {
+            startTimes[i] = events.get(i).getStartTimeMillis();
+        }
+        return startTimes;
+    }
+
+    public static long[] endTimes(List<Event> events) {
+        long[] endTimes = new long[events.size()];
+        for (int i = 0; i < endTimes.length; i++) {
+            endTimes[i] = events.get(i).getEndTimeMillis();
+        }
+        return endTimes;
+    }
+
+    private static final String[] TITLE_WORDS = {
+            "standup",
+            "1:1",
+            "design review for the calendar layout rewrite",
+            "lunch",
+            "interview loop debrief with the hiring committee",
+            "tech debt",
+    };
+}
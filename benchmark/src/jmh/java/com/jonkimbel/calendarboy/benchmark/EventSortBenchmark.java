@@ -0,0 +1,53 @@
+package com.jonkimbel.calendarboy.benchmark;
+
+import com.jonkimbel.calendarboy.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Sorting with Event::compare, as done after loading and before laying out. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventSortBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int eventCount;
+
+    @Param({"1", "16"})
+    public int meanOverlap;
+
+    private List<Event> sortedEvents;
+    private List<Event> shuffledEvents;
+
+    @Setup
+    public void setUp() {
+        sortedEvents = EventFixtures.sortedEvents(eventCount, meanOverlap);
+        shuffledEvents = EventFixtures.shuffledEvents(eventCount, meanOverlap);
+    }
+
+    @Benchmark
+    public List<Event> sortShuffled() {
+        List<Event> events = new ArrayList<>(shuffledEvents);
+        Collections.sort(events, Event::compare);
+        return events;
+    }
+
+    /** The common case: the provider already returned rows in order. */
+    @Benchmark
+    public List<Event> sortAlreadySorted() {
+        List<Event> events = new ArrayList<>(sortedEvents);
+        Collections.sort(events, Event::compare);
+        return events;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jonkimbel.calendarboy.view;
+
+import com.jonkimbel.calendarboy.benchmark.EventFixtures;
+import com.jonkimbel.calendarboy.model.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title line breaking. Lives in the view package because {@link EventTextLayout} is
+ * package-private. Text is measured at a fixed advance per character, which stands in for
+ * {@code Paint.breakText} so only our own work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventTextLayoutBenchmark {
+    private static final float CHAR_WIDTH_PX = 9;
+    private static final float TEXT_SIZE_PX = 42;
+    private static final EventTextLayout.Measurer MEASURER = (text, start, end, maxWidthPx) ->
+            Math.min(end - start, (int) (maxWidthPx / CHAR_WIDTH_PX));
+
+    @Param({"10", "1000", "100000"})
+    public int eventCount;
+
+    @Param({"1", "4", "16"})
+    public int meanOverlap;
+
+    private String[] titles;
+    private EventTextLayout[] layouts;
+    private float[] availableWidthsPx;
+    private int widthIndex = 0;
+
+    @Setup
+    public void setUp() {
+        List<Event> events = EventFixtures.sortedEvents(eventCount, meanOverlap);
+        titles = new String[eventCount];
+        layouts = new EventTextLayout[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            titles[i] = events.get(i).getTitle();
+            layouts[i] = new EventTextLayout();
+        }
+        // Denser calendars get narrower columns and therefore more lines per title.
+        availableWidthsPx = new float[]{1000f / meanOverlap, 1000f / meanOverlap + 1};
+    }
+
+    /** Every layout is stale, e.g. after the view was resized. */
+    @Benchmark
+    public int breakAll() {
+        // Alternate widths so every call misses the cache.
+        widthIndex ^= 1;
+        float widthPx = availableWidthsPx[widthIndex];
+        int lines = 0;
+        for (int i = 0; i < eventCount; i++) {
+            layouts[i].update(titles[i], widthPx, TEXT_SIZE_PX, MEASURER);
+            lines += layouts[i].getLineCount();
+        }
+        return lines;
+    }
+
+    /** Nothing changed, e.g. while zooming. */
+    @Benchmark
+    public int cacheHit() {
+        int lines = 0;
+        for (int i = 0; i < eventCount; i++) {
+            layouts[i].update(titles[i], 500, TEXT_SIZE_PX, MEASURER);
+            lines += layouts[i].getLineCount();
+        }
+        return lines;
+    }
+}